@@ -0,0 +1,77 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.benchmark;
+
+import com.dariawan.contactapp.domain.Contact;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contacts shaped like the ones the API serves, the same on every run.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static Contact contact(long id) {
+        Contact contact = new Contact();
+        contact.setId(id);
+        contact.setName("Jessica Abigail " + id);
+        contact.setPhone("+62 (482) 211-" + (1000 + id % 9000));
+        contact.setEmail("jessica" + id + "@ngilang.com");
+        contact.setAddress1("888 Constantine Ave, #54");
+        contact.setAddress2("San Angeles");
+        contact.setAddress3("Florida");
+        contact.setPostalCode("32106");
+        contact.setNote("Meet her at Spring Boot Conference");
+        contact.setVersion(id % 7);
+        return contact;
+    }
+
+    static List<Contact> contacts(int size) {
+        List<Contact> contacts = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            contacts.add(contact(i));
+        }
+        // what a Slice's getContent() hands to the converters
+        return Collections.unmodifiableList(contacts);
+    }
+}
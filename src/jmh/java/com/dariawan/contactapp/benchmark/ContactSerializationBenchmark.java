@@ -0,0 +1,119 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.benchmark;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * JSON and XML serialization of a contact and of a page of contacts, with
+ * the mappers configured as the message converters configure them, with and
+ * without Afterburner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ContactSerializationBenchmark {
+
+    @Param({"true", "false"})
+    private boolean afterburner;
+
+    @Param({"5", "100"})
+    private int pageSize;
+
+    private Contact contact;
+
+    private List<Contact> page;
+
+    private ObjectWriter jsonWriter;
+
+    private ObjectWriter xmlWriter;
+
+    @Setup
+    public void setup() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (afterburner) {
+            builder.modulesToInstall(new AfterburnerModule());
+        }
+        jsonWriter = builder.build().writer();
+        XmlMapper xmlMapper = builder.createXmlMapper(true).build();
+        xmlWriter = xmlMapper.writer();
+        contact = BenchmarkData.contact(1);
+        page = BenchmarkData.contacts(pageSize);
+    }
+
+    @Benchmark
+    public byte[] jsonContact() throws Exception {
+        return jsonWriter.writeValueAsBytes(contact);
+    }
+
+    @Benchmark
+    public byte[] jsonPage() throws Exception {
+        return jsonWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] xmlContact() throws Exception {
+        return xmlWriter.writeValueAsBytes(contact);
+    }
+
+    @Benchmark
+    public byte[] xmlPage() throws Exception {
+        return xmlWriter.writeValueAsBytes(page);
+    }
+}
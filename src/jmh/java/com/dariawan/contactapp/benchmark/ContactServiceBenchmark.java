@@ -0,0 +1,144 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.benchmark;
+
+import com.dariawan.contactapp.ContactApplication;
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.exception.ResourceNotFoundException;
+import com.dariawan.contactapp.service.ContactBatchService;
+import com.dariawan.contactapp.service.ContactService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * {@link ContactService} reads against the database of application.properties
+ * (override with -Djmh.args="-jvmArgs -Dspring.datasource.url=..."), so
+ * results include the second-level cache, Hibernate and PgJDBC. Contacts are
+ * generated when the table has fewer than {@value #MIN_CONTACTS}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContactServiceBenchmark {
+
+    private static final int MIN_CONTACTS = 10000;
+
+    private ConfigurableApplicationContext context;
+
+    private ContactService contactService;
+
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(ContactApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--contactapp.search.enabled=false");
+        contactService = context.getBean(ContactService.class);
+
+        List<Contact> existing = contactService.findAllAfter(null, MIN_CONTACTS);
+        if (existing.size() < MIN_CONTACTS) {
+            List<Contact> generated = new ArrayList<>();
+            for (int i = existing.size(); i < MIN_CONTACTS; i++) {
+                Contact contact = BenchmarkData.contact(i);
+                contact.setId(null);
+                contact.setVersion(null);
+                generated.add(contact);
+            }
+            context.getBean(ContactBatchService.class).saveAll(generated.iterator());
+            existing = contactService.findAllAfter(null, MIN_CONTACTS);
+        }
+        ids = existing.stream().mapToLong(Contact::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Contact findById() throws ResourceNotFoundException {
+        return contactService.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public List<Contact> findAllFirstPage() {
+        return contactService.findAll(1, 20);
+    }
+
+    @Benchmark
+    public List<Contact> findAllDeepPage() {
+        return contactService.findAll(ids.length / 20, 20);
+    }
+
+    @Benchmark
+    public List<Contact> findAllAfter() {
+        return contactService.findAllAfter(ids[ids.length / 2], 20);
+    }
+
+    @Benchmark
+    public List<Contact> findAllByName() {
+        return contactService.findAllByName("Abigail 12", 1, 20);
+    }
+
+    @Benchmark
+    public Long count() {
+        return contactService.count();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.benchmark;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.specification.ContactSpecification;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQL82Dialect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the {@link ContactSpecification} predicates of a name search,
+ * including the criteria query around them. Hibernate is bootstrapped for
+ * {@link Contact} alone, without a database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ContactSpecificationBenchmark {
+
+    private SessionFactory sessionFactory;
+
+    private CriteriaBuilder cb;
+
+    private Contact nameFilter;
+
+    private Contact namePhoneFilter;
+
+    @Setup
+    public void setup() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQL82Dialect.class.getName())
+                // do not connect to read the database's metadata
+                .applySetting("hibernate.temp.use_jdbc_metadata_defaults", false)
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(Contact.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        cb = sessionFactory.getCriteriaBuilder();
+
+        nameFilter = new Contact();
+        nameFilter.setName("Abi_gail%");
+        namePhoneFilter = new Contact();
+        namePhoneFilter.setName("Abigail");
+        namePhoneFilter.setPhone("482");
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Predicate name() {
+        return toPredicate(new ContactSpecification(nameFilter));
+    }
+
+    @Benchmark
+    public Predicate nameOrPhone() {
+        return toPredicate(new ContactSpecification(namePhoneFilter));
+    }
+
+    private Predicate toPredicate(ContactSpecification spec) {
+        CriteriaQuery<Contact> cq = cb.createQuery(Contact.class);
+        Root<Contact> root = cq.from(Contact.class);
+        return spec.toPredicate(root, cq, cb);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.loadtest;
+
+import com.dariawan.contactapp.util.ContactCsv;
+import com.dariawan.contactapp.util.PhoneNumbers;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+/**
+ * Fills the contact table with synthetic contacts through COPY, millions of
+ * rows a minute. Names and phone area codes are Zipf-skewed so searches and
+ * phone lookups see realistic selectivity; the seed makes a dataset
+ * reproducible.
+ */
+class DatasetGenerator {
+
+    static final String[] FIRST_NAMES = {
+        "Jessica", "Michael", "Sarah", "David", "Emily", "James", "Ashley", "John", "Amanda", "Robert",
+        "Melissa", "William", "Nicole", "Joseph", "Stephanie", "Daniel", "Jennifer", "Christopher",
+        "Elizabeth", "Matthew", "Lauren", "Andrew", "Rachel", "Joshua", "Megan", "Ryan", "Heather",
+        "Brandon", "Amber", "Justin", "Rebecca", "Kevin", "Laura", "Jason", "Danielle", "Anthony",
+        "Kimberly", "Eric", "Michelle", "Adam", "Tiffany", "Aaron", "Christina", "Kyle", "Kelly",
+        "Steven", "Samantha", "Thomas", "Katherine", "Timothy", "Abigail", "Budi", "Siti", "Agus",
+        "Dewi", "Putri", "Rizky", "Wahyu", "Ayu", "Yusuf", "Hiroshi", "Yuki", "Kenji", "Sakura",
+        "Wei", "Mei", "Jian", "Ling", "Arjun", "Priya", "Rahul", "Ananya", "Mateo", "Sofia",
+        "Lucas", "Valentina", "Olumide", "Chiamaka", "Kwame", "Amara", "Zanele", "Thabo", "Ines",
+        "Luca", "Giulia", "Lars", "Ingrid", "Pierre", "Camille", "Sven", "Astrid", "Nikolai", "Olga"
+    };
+
+    static final String[] LAST_NAMES = {
+        "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez",
+        "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore",
+        "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark",
+        "Ramirez", "Lewis", "Robinson", "Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres",
+        "Nguyen", "Hill", "Flores", "Green", "Adams", "Nelson", "Baker", "Hall", "Rivera", "Campbell",
+        "Mitchell", "Carter", "Roberts", "Santoso", "Wijaya", "Hidayat", "Saputra", "Kusuma",
+        "Pratama", "Setiawan", "Tanaka", "Suzuki", "Watanabe", "Wang", "Li", "Zhang", "Liu", "Chen",
+        "Sharma", "Patel", "Singh", "Kumar", "Silva", "Santos", "Okafor", "Adeyemi", "Mensah",
+        "Dlamini", "Rossi", "Russo", "Ferrari", "Muller", "Schmidt", "Schneider", "Dubois", "Moreau",
+        "Johansson", "Andersson", "Ivanov", "Petrov", "Kowalski", "Novak", "Horvat", "Abigail"
+    };
+
+    static final String[] AREA_CODES = {
+        "21", "22", "24", "31", "61", "62", "212", "213", "305", "312", "415", "617", "646", "702",
+        "713", "718", "808", "20", "30", "40", "69", "89", "3", "6", "11", "33", "44", "55", "66", "77"
+    };
+
+    private static final String[] CITIES = {
+        "Jakarta", "Bandung", "San Angeles", "Florida", "Tokyo", "Singapore", "London", "Berlin",
+        "Paris", "Lagos", "Sydney", "Toronto", "Mumbai", "Sao Paulo", "Seoul"
+    };
+
+    private static final String COPY_SQL = "COPY contact (id, name, phone, phone_digits, "
+            + "phone_digits_rev, email, address1, address2, address3, postal_code, note, version) "
+            + "FROM STDIN (FORMAT csv)";
+
+    private final String url;
+    private final String username;
+    private final String password;
+
+    DatasetGenerator(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Appends {@code rows} contacts after the highest existing id, then moves
+     * contact_id_seq past them and refreshes the planner statistics.
+     */
+    void generate(long rows, long seed) throws SQLException, IOException {
+        Random random = new Random(seed);
+        Zipf<String> firstNames = new Zipf<>(FIRST_NAMES, 1.1);
+        Zipf<String> lastNames = new Zipf<>(LAST_NAMES, 1.1);
+        Zipf<String> areaCodes = new Zipf<>(AREA_CODES, 1.3);
+
+        try (Connection conn = DriverManager.getConnection(url, username, password)) {
+            long firstId;
+            try (Statement st = conn.createStatement();
+                    // above existing rows and the id block a running application may hold
+                    ResultSet rs = st.executeQuery("select greatest(coalesce(max(id), 0), "
+                            + "(select last_value + 49 from contact_id_seq)) + 1 from contact")) {
+                rs.next();
+                firstId = rs.getLong(1);
+            }
+
+            long started = System.nanoTime();
+            conn.setAutoCommit(false);
+            try (Writer out = new OutputStreamWriter(new PGCopyOutputStream(
+                    conn.unwrap(PGConnection.class), COPY_SQL, 1 << 16), StandardCharsets.UTF_8)) {
+                String[] row = new String[12];
+                for (long i = 0; i < rows; i++) {
+                    long id = firstId + i;
+                    String first = firstNames.next(random);
+                    String last = lastNames.next(random);
+                    String phone = "+" + areaCodes.next(random) + " " + (1000000 + random.nextInt(9000000));
+                    String digits = PhoneNumbers.digits(phone);
+                    row[0] = Long.toString(id);
+                    row[1] = first + " " + last;
+                    row[2] = phone;
+                    row[3] = digits;
+                    row[4] = PhoneNumbers.reverse(digits);
+                    row[5] = first.toLowerCase() + "." + last.toLowerCase() + id + "@example.com";
+                    row[6] = (1 + random.nextInt(999)) + " " + last + " Street";
+                    row[7] = random.nextInt(4) == 0 ? null : CITIES[random.nextInt(CITIES.length)];
+                    row[8] = null;
+                    row[9] = Integer.toString(10000 + random.nextInt(90000));
+                    row[10] = random.nextInt(10) == 0 ? "Met at " + CITIES[random.nextInt(CITIES.length)] : null;
+                    row[11] = "0";
+                    ContactCsv.writeRow(out, row);
+                    if ((i + 1) % 1000000 == 0) {
+                        System.out.println("Generated " + (i + 1) + " contacts");
+                    }
+                }
+            }
+            conn.commit();
+
+            try (Statement st = conn.createStatement()) {
+                // pooled-lo hands out [nextval, nextval + 50), all above the new rows
+                st.execute("select setval('contact_id_seq', " + (firstId + rows - 1) + ")");
+                conn.commit();
+                conn.setAutoCommit(true);
+                st.execute("analyze contact");
+            }
+            long seconds = Math.max(1, (System.nanoTime() - started) / 1000000000L);
+            System.out.println("Generated " + rows + " contacts in " + seconds + " s (" 
+                    + rows / seconds + " rows/s), ids " + firstId + ".." + (firstId + rows - 1));
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Drives the contact API with an open workload: requests start at Poisson
+ * arrival times for the configured rate whether or not earlier ones have
+ * finished, as real clients do. Latency is measured from the intended start,
+ * so time spent waiting for a connection behind a slow server is counted (no
+ * coordinated omission). Requests are non-blocking, at most
+ * {@code concurrency} connections are open.
+ */
+class LoadDriver {
+
+    enum Operation {
+        LIST, SEARCH, GET, POST, PUT, PATCH, DELETE
+    }
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final int SKIPPED = -1;
+
+    private final Map<Operation, Integer> mix;
+    private final double rate;
+    private final Duration warmup;
+    private final Duration duration;
+    private final long seed;
+
+    private final ConnectionProvider connections;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final ConcurrentLinkedQueue<Long> created = new ConcurrentLinkedQueue<>();
+
+    private Zipf<Long> hotIds;
+    private Zipf<String> names;
+
+    LoadDriver(String target, Map<Operation, Integer> mix, double rate, Duration warmup, 
+            Duration duration, int concurrency, long seed) {
+        this.mix = mix;
+        this.rate = rate;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.seed = seed;
+        this.connections = ConnectionProvider.fixed("loadtest", concurrency);
+        this.client = HttpClient.create(connections)
+                .baseUrl(target)
+                .headers(headers -> headers.set("Accept", "application/json"));
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_MICROS, 3));
+            errors.put(operation, new AtomicLong());
+        }
+    }
+
+    void run(File reportDir, int sampleSize) throws IOException, InterruptedException {
+        Long[] ids = sampleIds(sampleSize);
+        if (ids.length == 0) {
+            throw new IllegalStateException("No contacts found, generate a dataset first");
+        }
+        hotIds = new Zipf<>(ids, 1.0);
+        names = new Zipf<>(DatasetGenerator.FIRST_NAMES, 1.1);
+        System.out.println("Sampled " + ids.length + " contact ids, running " + rate + " req/s for "
+                + warmup.getSeconds() + " s warmup + " + duration.getSeconds() + " s");
+
+        Operation[] operations = mix.keySet().toArray(new Operation[0]);
+        int[] cumulative = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulative[i] = total;
+        }
+
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        boolean measuring = false;
+        for (long intended = start; intended < end; 
+                intended += (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9)) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (!measuring && intended >= measureFrom) {
+                // drop what was recorded during warmup
+                recorders.values().forEach(Recorder::reset);
+                errors.values().forEach(counter -> counter.set(0));
+                skipped.set(0);
+                measuring = true;
+            }
+            int pick = random.nextInt(total);
+            int i = 0;
+            while (cumulative[i] <= pick) {
+                i++;
+            }
+            execute(operations[i], intended);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        connections.dispose();
+        report(reportDir, (double) duration.toNanos() / 1e9);
+    }
+
+    private void execute(Operation operation, long intendedStart) {
+        inFlight.incrementAndGet();
+        call(operation).subscribe(
+                status -> completed(operation, intendedStart, status),
+                error -> completed(operation, intendedStart, 599));
+    }
+
+    private void completed(Operation operation, long intendedStart, int status) {
+        if (status == SKIPPED) {
+            skipped.incrementAndGet();
+        } else {
+            if (status >= 400) {
+                errors.get(operation).incrementAndGet();
+            }
+            long micros = (System.nanoTime() - intendedStart) / 1000;
+            recorders.get(operation).recordValue(Math.min(micros, HIGHEST_MICROS));
+        }
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * One request of the operation, emitting its status, or SKIPPED when
+     * there is nothing to do (no contact created yet to delete).
+     */
+    private Mono<Integer> call(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case LIST:
+                return status(request(HttpMethod.GET, 
+                        "/api/contacts?page=" + (1 + random.nextInt(10)) + "&size=20", null));
+            case SEARCH:
+                return status(request(HttpMethod.GET, 
+                        "/api/contacts?size=20&name=" + encode(names.next(random)), null));
+            case GET:
+                return status(request(HttpMethod.GET, "/api/contacts/" + hotIds.next(random), null));
+            case POST:
+                return request(HttpMethod.POST, "/api/contacts", newContact(random))
+                        .doOnNext(response -> {
+                            String location = response.headers.get("Location");
+                            if (location != null) {
+                                created.add(Long.valueOf(location.substring(location.lastIndexOf('/') + 1)));
+                            }
+                        })
+                        .map(response -> response.status);
+            case PUT:
+                return status(request(HttpMethod.PUT, "/api/contacts/" + hotIds.next(random), 
+                        newContact(random)));
+            case PATCH:
+                ObjectNode address = objectMapper.createObjectNode();
+                address.put("address1", (1 + random.nextInt(999)) + " Load Street");
+                return status(request(HttpMethod.PATCH, "/api/contacts/" + hotIds.next(random), address));
+            case DELETE:
+                Long id = created.poll();
+                return id == null 
+                        ? Mono.just(SKIPPED) 
+                        : status(request(HttpMethod.DELETE, "/api/contacts/" + id, null));
+            default:
+                return Mono.error(new IllegalArgumentException(operation.name()));
+        }
+    }
+
+    private ObjectNode newContact(Random random) {
+        String first = names.next(random);
+        ObjectNode contact = objectMapper.createObjectNode();
+        contact.put("name", first + " Loadtest");
+        contact.put("phone", "+62 " + (1000000 + random.nextInt(9000000)));
+        contact.put("email", first.toLowerCase() + random.nextInt(1000000) + "@example.com");
+        return contact;
+    }
+
+    private Mono<Response> request(HttpMethod method, String path, JsonNode body) {
+        HttpClient.ResponseReceiver<?> receiver;
+        if (body == null) {
+            receiver = client.request(method).uri(path);
+        } else {
+            receiver = client.headers(headers -> headers.set("Content-Type", "application/json"))
+                    .request(method)
+                    .uri(path)
+                    .send(ByteBufFlux.fromString(Mono.fromCallable(() -> objectMapper.writeValueAsString(body))));
+        }
+        // the body is read to the end, so the connection goes back to the pool
+        return receiver.responseSingle((response, content) -> content.asByteArray()
+                .defaultIfEmpty(EMPTY)
+                .map(bytes -> new Response(response.status().code(), response.responseHeaders(), bytes)));
+    }
+
+    private static Mono<Integer> status(Mono<Response> response) {
+        return response.map(r -> r.status);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private Long[] sampleIds(int sampleSize) throws IOException {
+        List<Long> sample = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null && sample.size() < sampleSize) {
+            Response response = request(HttpMethod.GET, 
+                    "/api/contacts?size=100&fields=id&after=" + encode(cursor), null).block();
+            if (response.status != 200) {
+                throw new IOException("Listing contacts failed with status " + response.status);
+            }
+            for (JsonNode contact : objectMapper.readTree(response.body)) {
+                sample.add(contact.get("id").asLong());
+            }
+            cursor = response.headers.get("X-Next-Cursor");
+        }
+        return sample.toArray(new Long[0]);
+    }
+
+    private void report(File reportDir, double seconds) throws IOException {
+        reportDir.mkdirs();
+        System.out.println();
+        System.out.println(String.format("%-8s %9s %7s %9s %9s %9s %9s %9s %9s", "endpoint", "requests", 
+                "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Operation operation : mix.keySet()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            System.out.println(String.format("%-8s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f", 
+                    operation.name().toLowerCase(), histogram.getTotalCount(), errors.get(operation).get(),
+                    histogram.getTotalCount() / seconds, 
+                    histogram.getValueAtPercentile(50) / 1000.0, 
+                    histogram.getValueAtPercentile(90) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0, 
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0));
+            try (PrintStream out = new PrintStream(new FileOutputStream(
+                    new File(reportDir, operation.name().toLowerCase() + ".hgrm")), false, "UTF-8")) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        if (skipped.get() > 0) {
+            System.out.println(skipped.get() + " deletes skipped, no contact created yet");
+        }
+        System.out.println("Percentile distributions (ms) written to " + reportDir.getAbsolutePath());
+    }
+
+    private static final class Response {
+
+        private final int status;
+        private final HttpHeaders headers;
+        private final byte[] body;
+
+        private Response(int status, HttpHeaders headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+}
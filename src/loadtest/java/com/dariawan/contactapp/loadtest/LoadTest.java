@@ -0,0 +1,169 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.loadtest;
+
+import com.dariawan.contactapp.ContactApplication;
+import com.dariawan.contactapp.loadtest.LoadDriver.Operation;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Command line entry point of the load test harness, run through the
+ * {@code loadtest} Maven profile:
+ * <pre>
+ * generate --rows=1000000 [--seed=42] [--url=jdbc:...] [--username=..] [--password=..]
+ * run [--target=http://localhost:8080] [--boot] [--rate=200] [--warmup=30s] [--duration=2m]
+ *     [--mix=list:30,search:10,get:40,post:5,put:5,patch:5,delete:5] [--concurrency=64]
+ *     [--report=target/loadtest] [--seed=42] [--sample=10000]
+ * </pre>
+ * Database settings default to the ones in application.properties.
+ */
+public class LoadTest {
+
+    private static final String DEFAULT_MIX = "list:30,search:10,get:40,post:5,put:5,patch:5,delete:5";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !("generate".equals(args[0]) || "run".equals(args[0]))) {
+            System.err.println("Usage: LoadTest generate|run [--option=value ...]");
+            System.exit(2);
+        }
+        Map<String, String> options = parseOptions(args);
+        // logback logs everything at debug until Spring Boot configures it
+        LoggingSystem.get(LoadTest.class.getClassLoader())
+                .setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.INFO);
+        if ("generate".equals(args[0])) {
+            generate(options);
+        } else {
+            run(options);
+        }
+    }
+
+    private static void generate(Map<String, String> options) throws Exception {
+        Properties defaults = new Properties();
+        try (InputStream in = LoadTest.class.getResourceAsStream("/application.properties")) {
+            if (in != null) {
+                defaults.load(in);
+            }
+        }
+        String url = option(options, "url", defaults.getProperty("spring.datasource.url"));
+        DatasetGenerator generator = new DatasetGenerator(url,
+                option(options, "username", defaults.getProperty("spring.datasource.username")),
+                option(options, "password", defaults.getProperty("spring.datasource.password")));
+        long rows = Long.parseLong(option(options, "rows", "1000000"));
+        long start = System.nanoTime();
+        generator.generate(rows, Long.parseLong(option(options, "seed", "42")));
+        System.out.println(String.format("Generated %d contacts into %s in %.1f s", rows, url,
+                (System.nanoTime() - start) / 1e9));
+    }
+
+    private static void run(Map<String, String> options) throws IOException, InterruptedException {
+        String target = option(options, "target", "http://localhost:8080");
+        ConfigurableApplicationContext context = null;
+        if (options.containsKey("boot")) {
+            // serve from this JVM, on the port of the target
+            int port = Integer.parseInt(target.substring(target.lastIndexOf(':') + 1).replaceAll("/.*", ""));
+            context = SpringApplication.run(ContactApplication.class, "--server.port=" + port);
+        }
+        try {
+            LoadDriver driver = new LoadDriver(target,
+                    parseMix(option(options, "mix", DEFAULT_MIX)),
+                    Double.parseDouble(option(options, "rate", "200")),
+                    DurationStyle.detectAndParse(option(options, "warmup", "30s")),
+                    DurationStyle.detectAndParse(option(options, "duration", "2m")),
+                    Integer.parseInt(option(options, "concurrency", "64")),
+                    Long.parseLong(option(options, "seed", "42")));
+            driver.run(new File(option(options, "report", "target/loadtest")),
+                    Integer.parseInt(option(options, "sample", "10000")));
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Mix entry must be operation:weight, got " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mix has no operation with a positive weight");
+        }
+        return weights;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            int equals = args[i].indexOf('=');
+            if (equals < 0) {
+                options.put(args[i].substring(2), "");
+            } else {
+                options.put(args[i].substring(2, equals), args[i].substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+}
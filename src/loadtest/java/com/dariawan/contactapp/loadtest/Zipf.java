@@ -0,0 +1,72 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks from a list with Zipf-distributed popularity: the k-th value is
+ * chosen with probability proportional to 1 / k^exponent, so a few names
+ * and area codes are very common and most are rare, as in real address
+ * books.
+ */
+final class Zipf<T> {
+
+    private final T[] values;
+    private final double[] cumulative;
+
+    Zipf(T[] values, double exponent) {
+        this.values = values;
+        this.cumulative = new double[values.length];
+        double sum = 0;
+        for (int k = 0; k < values.length; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < values.length; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    T next(Random random) {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return values[Math.min(i < 0 ? -i - 1 : i, values.length - 1)];
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.config;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.service.ContactResponseCache;
+import java.time.Duration;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * JCache (Ehcache 3) cache manager backing Hibernate's second-level cache, so
+ * the {@code @Cache} on {@link Contact} takes effect. The Contact region is
+ * created here from {@code contactapp.cache.contact.*} instead of an
+ * ehcache.xml, and handed to Hibernate as an explicit cache manager. The same
+ * manager holds the serialized contacts of {@link ContactResponseCache}.
+ */
+@Configuration
+public class CacheConfig {
+
+    // default region name Hibernate uses for an entity
+    public static final String CONTACT_REGION = Contact.class.getName();
+
+    public static final String CONTACT_RESPONSE_REGION = "contact-responses";
+
+    @Value("${contactapp.cache.contact.max-entries:10000}")
+    private long contactMaxEntries;
+
+    @Value("${contactapp.cache.contact.ttl:10m}")
+    private Duration contactTtl;
+
+    @Value("${contactapp.cache.contact.expiry:ttl}")
+    private String contactExpiry;
+
+    @Value("${contactapp.cache.response.max-entries:10000}")
+    private long responseMaxEntries;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager jcacheCacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), 
+                getClass().getClassLoader());
+
+        // Ehcache bounds the heap tier by entry count and evicts by its own
+        // sampled policy; what is configurable is how entries expire
+        CacheConfiguration<Object, Object> contactCache = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, 
+                        ResourcePoolsBuilder.heap(contactMaxEntries))
+                .withExpiry("tti".equals(contactExpiry)
+                        ? ExpiryPolicyBuilder.timeToIdleExpiration(contactTtl)
+                        : ExpiryPolicyBuilder.timeToLiveExpiration(contactTtl))
+                .build();
+        cacheManager.createCache(CONTACT_REGION, 
+                Eh107Configuration.fromEhcacheCacheConfiguration(contactCache));
+        cacheManager.enableStatistics(CONTACT_REGION, true);
+
+        // fragments are checked against the contact's version, no expiry needed
+        CacheConfiguration<Long, ContactResponseCache.Fragments> responseCache = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Long.class, ContactResponseCache.Fragments.class, 
+                        ResourcePoolsBuilder.heap(responseMaxEntries))
+                .build();
+        cacheManager.createCache(CONTACT_RESPONSE_REGION, 
+                Eh107Configuration.fromEhcacheCacheConfiguration(responseCache));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer jcacheHibernateCustomizer(CacheManager jcacheCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put("hibernate.cache.use_second_level_cache", "true");
+            hibernateProperties.put("hibernate.cache.region.factory_class", ConfigSettings.SIMPLE_FACTORY_NAME);
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, jcacheCacheManager);
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "create");
+        };
+    }
+}
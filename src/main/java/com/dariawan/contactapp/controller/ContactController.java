@@ -34,26 +34,46 @@
 package com.dariawan.contactapp.controller;
 
 import com.dariawan.contactapp.domain.Address;
+import com.dariawan.contactapp.domain.BatchResult;
 import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.domain.ImportJob;
 import com.dariawan.contactapp.exception.BadResourceException;
 import com.dariawan.contactapp.exception.ResourceAlreadyExistsException;
+import com.dariawan.contactapp.exception.ResourceConflictException;
 import com.dariawan.contactapp.exception.ResourceNotFoundException;
+import com.dariawan.contactapp.service.ContactBatchService;
+import com.dariawan.contactapp.service.ContactExportService;
+import com.dariawan.contactapp.service.ContactImportService;
+import com.dariawan.contactapp.service.ContactResponseCache;
 import com.dariawan.contactapp.service.ContactService;
+import com.dariawan.contactapp.util.NdJsonIterator;
+import com.dariawan.contactapp.util.PageCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -62,6 +82,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -75,43 +96,212 @@ public class ContactController {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private final int ROW_PER_PAGE = 5;
+    
+    private final int MAX_ROW_PER_PAGE = 100;
+    
+    private static final List<String> VERSION_FIELDS = Collections.singletonList("version");
+    
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    
+    private static final String CSV_VALUE = "text/csv";
 
     @Autowired
     private ContactService contactService;
+    
+    @Autowired
+    private ContactBatchService contactBatchService;
+    
+    @Autowired
+    private ContactExportService contactExportService;
+    
+    @Autowired
+    private ContactImportService contactImportService;
+    
+    @Autowired
+    private ContactResponseCache contactResponseCache;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
 
-    @ApiOperation(value = "Find Contacts by name", notes = "Name search by %name% format", tags = {"contact"})
+    @ApiOperation(value = "Find Contacts by name", notes = "Name search by %name% format. "
+            + "Pass 'after' (empty for the first page) to page by cursor instead of page number; "
+            + "the next cursor is returned in the " + NEXT_CURSOR_HEADER + " header. "
+            + "Pages filled to their size, with all fields, carry an ETag for If-None-Match.", 
+            tags = {"contact"})
     @ApiResponses(value = {
-        @ApiResponse(code = 200, message = "successful operation", response = List.class)})
+        @ApiResponse(code = 200, message = "successful operation", response = List.class),
+        @ApiResponse(code = 304, message = "Page not modified since If-None-Match"),
+        @ApiResponse(code = 400, message = "Invalid cursor, phone or fields, or a cursor with phone")})
     @GetMapping(value = "/contacts")
-    public ResponseEntity<List<Contact>> findAll(
+    public ResponseEntity<?> findAll(
             @ApiParam(name = "contactId",
                     value = "Page number, default is 1",
                     example = "1",
                     required = false) @RequestParam(value = "page", defaultValue = "1") int pageNumber,
-            @ApiParam("Name of the contact for search.") @RequestParam(required = false) String name) {
-        if (StringUtils.isEmpty(name)) {
-            return ResponseEntity.ok(contactService.findAll(pageNumber, ROW_PER_PAGE));
-        } else {
-            return ResponseEntity.ok(contactService.findAllByName(name, pageNumber, ROW_PER_PAGE));
+            @ApiParam("Name of the contact for search.") @RequestParam(required = false) String name,
+            @ApiParam(value = "Number of contacts per page, default is 5, maximum is 100",
+                    example = "5") @RequestParam(value = "size", required = false) Integer size,
+            @ApiParam("Cursor returned by the previous page, empty to start from the first contact.")
+            @RequestParam(value = "after", required = false) String after,
+            @ApiParam("Phone digits to look up, punctuation is ignored. Takes precedence over name, "
+                    + "pages by page number only.")
+            @RequestParam(value = "phone", required = false) String phone,
+            @ApiParam(value = "How phone digits match: suffix (default, e.g. caller-ID), prefix or exact",
+                    allowableValues = "suffix,prefix,exact")
+            @RequestParam(value = "phoneMatch", defaultValue = "suffix") String phoneMatch,
+            @ApiParam(value = "Fields to return, comma separated; id is always included. "
+                    + "Only these columns are read from the database.", example = "id,name,phone")
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @ApiParam("ETag of the page the client has, answered with 304 when it is still current.")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        int rowPerPage = size == null ? ROW_PER_PAGE : Math.max(1, Math.min(size, MAX_ROW_PER_PAGE));
+        boolean sparse = fields != null && !fields.isEmpty();
+        if (after != null && !StringUtils.isEmpty(phone)) {
+            // log exception first, then return Bad Request (400)
+            logger.error("Phone lookups page by page number, not by cursor");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
+        boolean keyset = after != null;
+        try {
+            Long afterId = keyset && !after.isEmpty() ? PageCursor.decode(after) : null;
+            if (!sparse && ifNoneMatch != null) {
+                // validate against the ids and versions on the page, without loading it
+                List<?> versions = findPage(phone, phoneMatch, name, keyset, afterId, VERSION_FIELDS, 
+                        pageNumber, rowPerPage);
+                if (versions.size() == rowPerPage) {
+                    String etag = pageETag(versions, accept);
+                    if (matches(ifNoneMatch, etag)) {
+                        return pageResponse(HttpStatus.NOT_MODIFIED, versions, keyset, rowPerPage)
+                                .eTag(etag)
+                                .varyBy(HttpHeaders.ACCEPT)
+                                .build();
+                    }
+                }
+            }
+            
+            List<?> contacts = findPage(phone, phoneMatch, name, keyset, afterId, sparse ? fields : null, 
+                    pageNumber, rowPerPage);
+            ResponseEntity.BodyBuilder response = pageResponse(HttpStatus.OK, contacts, keyset, rowPerPage);
+            if (!sparse && contacts.size() == rowPerPage) {
+                response.eTag(pageETag(contacts, accept));
+            }
+            return listBody(response, contacts, sparse, accept);
+        } catch (BadResourceException ex) {
+            // log exception first, then return Bad Request (400)
+            logger.error(ex.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @ApiOperation(value = "Full-text search of contacts", notes = "Ranked search over name, email, "
+            + "note and address, served from the in-memory index (contactapp.search.enabled)", 
+            tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation", response = List.class),
+        @ApiResponse(code = 501, message = "Search index is not enabled"),
+        @ApiResponse(code = 503, message = "Search index is still being built")})
+    @GetMapping(value = "/contacts/search")
+    public ResponseEntity<?> search(
+            @ApiParam(value = "Search terms, any of them may match", required = true) 
+            @RequestParam("q") String query,
+            @ApiParam(value = "Maximum number of contacts, default is 20, maximum is 100",
+                    example = "20") @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (!contactService.isSearchEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        if (!contactService.isSearchReady()) {
+            // partial results would look like complete ones
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        return listBody(ResponseEntity.ok(), contactService.search(query, 
+                Math.max(1, Math.min(limit, MAX_ROW_PER_PAGE))), false, accept);
+    }
+
+    @ApiOperation(value = "Export all contacts", notes = "Streams the whole table as ndjson "
+            + "(default), json, xml or csv", tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation"),
+        @ApiResponse(code = 400, message = "Unknown format")})
+    @GetMapping(value = "/contacts/export")
+    public void export(
+            @ApiParam(value = "Export format", allowableValues = "ndjson,json,xml,csv")
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+        ContactExportService.Format exportFormat;
+        try {
+            exportFormat = ContactExportService.Format.of(format);
+        } catch (BadResourceException ex) {
+            // log exception first, then return Bad Request (400)
+            logger.error(ex.getMessage());
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, 
+                "attachment; filename=\"contacts." + exportFormat.getExtension() + "\"");
+        contactExportService.export(exportFormat, response.getOutputStream());
+    }
+
+    @ApiOperation(value = "Count contacts", notes = "Served from a maintained counter or the "
+            + "planner estimate, see contactapp.count.mode", tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation", response = Long.class)})
+    @GetMapping(value = "/contacts/count")
+    public ResponseEntity<Long> count() {
+        return ResponseEntity.ok(contactService.count());
     }
 
-    @ApiOperation(value = "Find contact by ID", notes = "Returns a single contact", tags = {"contact"})
+    @ApiOperation(value = "Find contact by ID", notes = "Returns a single contact, with its version "
+            + "as ETag", tags = {"contact"})
     @ApiResponses(value = {
         @ApiResponse(code = 200, message = "successful operation", response = Contact.class),
+        @ApiResponse(code = 304, message = "Contact not modified since If-None-Match"),
+        @ApiResponse(code = 400, message = "Invalid fields"),
         @ApiResponse(code = 404, message = "Contact not found")})
     @GetMapping(value = "/contacts/{contactId}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Contact> findContactById(
+    public ResponseEntity<?> findContactById(
             @ApiParam(name = "contactId",
                     value = "Id of the contact to be obtained. Cannot be empty.",
                     example = "1",
                     required = true)
-            @PathVariable long contactId) {
+            @PathVariable long contactId,
+            @ApiParam(value = "Fields to return, comma separated; id is always included.",
+                    example = "id,name,phone")
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @ApiParam("ETag (version) of the contact the client has, answered with 304 when it is "
+                    + "still current.")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            if (fields != null && !fields.isEmpty()) {
+                return ResponseEntity.ok(contactService.findById(contactId, fields));
+            }
+            if (ifNoneMatch != null) {
+                String etag = contactService.findVersionById(contactId).toString();
+                if (matches(ifNoneMatch, etag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                            .eTag(etag)
+                            .varyBy(HttpHeaders.ACCEPT)
+                            .build();
+                }
+            }
             Contact contact = contactService.findById(contactId);
-            return ResponseEntity.ok(contact);  // return 200, with json body
+            return ResponseEntity.ok()
+                    .eTag(contact.getVersion().toString())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(contactResponseCache.json(contact));  // return 200, with json body
         } catch (ResourceNotFoundException ex) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null); // return 404, with null body
+        } catch (BadResourceException ex) {
+            // log exception first, then return Bad Request (400)
+            logger.error(ex.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
     }
 
@@ -140,12 +330,126 @@ public class ContactController {
         }
     }
 
-    @ApiOperation(value = "Update an existing contact", tags = {"contact"})
+    @ApiOperation(value = "Add contacts in bulk", notes = "Each contact is validated on its own; "
+            + "valid ones are inserted in JDBC batches and committed in chunks", tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation, see errors for rejected contacts", 
+                response = BatchResult.class)})
+    @PostMapping(value = "/contacts/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchResult> addContacts(
+            @ApiParam("Contacts to add.")
+            @RequestBody List<Contact> contacts) {
+        return ResponseEntity.ok(contactBatchService.saveAll(contacts.iterator()));
+    }
+
+    @ApiOperation(value = "Add contacts in bulk from an NDJSON stream", 
+            notes = "One contact per line, read and inserted as the request streams in", tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation, see errors for rejected contacts", 
+                response = BatchResult.class)})
+    @PostMapping(value = "/contacts/batch", consumes = NDJSON_VALUE)
+    public ResponseEntity<BatchResult> addContactsStream(HttpServletRequest request) throws IOException {
+        try (BufferedReader reader = request.getReader()) {
+            return ResponseEntity.ok(contactBatchService.saveAll(
+                    new NdJsonIterator<>(reader, objectMapper.readerFor(Contact.class))));
+        }
+    }
+
+    @ApiOperation(value = "Import contacts from CSV", notes = "The CSV needs a header row naming "
+            + "its columns (name is required; id, phone, email, address1, address2, address3, "
+            + "postal_code and note are optional). Records with an id update that contact. "
+            + "The import runs in the background, poll the returned location for progress.", 
+            tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 202, message = "Import accepted", response = ImportJob.class)})
+    @PostMapping(value = "/contacts/import", consumes = CSV_VALUE)
+    public ResponseEntity<ImportJob> importContacts(HttpServletRequest request) 
+            throws IOException, URISyntaxException {
+        ImportJob job = contactImportService.submit(request.getInputStream());
+        return ResponseEntity.accepted()
+                .location(new URI("/api/contacts/import/" + job.getId()))
+                .body(job);
+    }
+
+    @ApiOperation(value = "Find CSV import by ID", notes = "Returns progress and rejected records", 
+            tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation", response = ImportJob.class),
+        @ApiResponse(code = 404, message = "Import not found")})
+    @GetMapping(value = "/contacts/import/{importId}")
+    public ResponseEntity<ImportJob> findImportById(
+            @ApiParam(name = "importId",
+                    value = "Id of the import returned when it was submitted.",
+                    required = true)
+            @PathVariable String importId) {
+        try {
+            return ResponseEntity.ok(contactImportService.findById(importId));
+        } catch (ResourceNotFoundException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null); // return 404, with null body
+        }
+    }
+
+    @ApiOperation(value = "Add or update a contact", notes = "Matches an existing contact by id or "
+            + "email (contactapp.upsert.conflict-key) and updates it, or adds a new one, in a single "
+            + "statement", tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Contact updated", response = Contact.class),
+        @ApiResponse(code = 201, message = "Contact created", response = Contact.class),
+        @ApiResponse(code = 400, message = "Invalid input")})
+    @PutMapping(value = "/contacts:upsert")
+    public ResponseEntity<Contact> upsertContact(
+            @ApiParam("Contact to add or update. Cannot null or empty.")
+            @Valid @RequestBody Contact contact) throws URISyntaxException {
+        try {
+            if (contactBatchService.upsert(contact)) {
+                return ResponseEntity.created(new URI("/api/contacts/" + contact.getId()))
+                        .eTag(contact.getVersion().toString())
+                        .varyBy(HttpHeaders.ACCEPT)
+                        .body(contact);
+            }
+            return ResponseEntity.ok()
+                    .eTag(contact.getVersion().toString())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(contact);
+        } catch (BadResourceException ex) {
+            // log exception first, then return Bad Request (400)
+            logger.error(ex.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @ApiOperation(value = "Add or update contacts in bulk", notes = "Like a single upsert, with one "
+            + "statement per chunk of contacts", tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation, see errors for rejected contacts", 
+                response = BatchResult.class)})
+    @PutMapping(value = "/contacts/batch:upsert", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchResult> upsertContacts(
+            @ApiParam("Contacts to add or update.")
+            @RequestBody List<Contact> contacts) {
+        return ResponseEntity.ok(contactBatchService.upsertAll(contacts.iterator()));
+    }
+
+    @ApiOperation(value = "Add or update contacts in bulk from an NDJSON stream", tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation, see errors for rejected contacts", 
+                response = BatchResult.class)})
+    @PutMapping(value = "/contacts/batch:upsert", consumes = NDJSON_VALUE)
+    public ResponseEntity<BatchResult> upsertContactsStream(HttpServletRequest request) throws IOException {
+        try (BufferedReader reader = request.getReader()) {
+            return ResponseEntity.ok(contactBatchService.upsertAll(
+                    new NdJsonIterator<>(reader, objectMapper.readerFor(Contact.class))));
+        }
+    }
+
+    @ApiOperation(value = "Update an existing contact", notes = "Send the contact's version as "
+            + "If-Match to update only if it was not changed meanwhile", tags = {"contact"})
     @ApiResponses(value = {
         @ApiResponse(code = 200, message = "successful operation"),
         @ApiResponse(code = 400, message = "Invalid ID supplied"),
         @ApiResponse(code = 404, message = "Contact not found"),
-        @ApiResponse(code = 405, message = "Validation exception")})
+        @ApiResponse(code = 405, message = "Validation exception"),
+        @ApiResponse(code = 412, message = "Contact was changed, version does not match If-Match")})
     @PutMapping(value = "/contacts/{contactId}")
     public ResponseEntity<Contact> updateContact(
             @ApiParam(name = "contactId",
@@ -153,16 +457,26 @@ public class ContactController {
                     example = "1",
                     required = true)
             @PathVariable long contactId,
+            @ApiParam("Version of the contact the update is based on, as returned in its ETag.")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @ApiParam("Contact to update. Cannot null or empty.")
             @Valid @RequestBody Contact contact) {
         try {
             contact.setId(contactId);
+            contact.setVersion(parseVersion(ifMatch));
             contactService.update(contact);
-            return ResponseEntity.ok().build();
+            return ResponseEntity.ok()
+                    .eTag(contact.getVersion().toString())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .build();
         } catch (ResourceNotFoundException ex) {
             // log exception first, then return Not Found (404)
             logger.error(ex.getMessage());
             return ResponseEntity.notFound().build();
+        } catch (ResourceConflictException ex) {
+            // log exception first, then return Precondition Failed (412)
+            logger.error(ex.getMessage());
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         } catch (BadResourceException ex) {
             // log exception first, then return Bad Request (400)
             logger.error(ex.getMessage());
@@ -170,9 +484,11 @@ public class ContactController {
         }
     }
 
-    @ApiOperation(value = "Update an existing contact's address", tags = {"contact"})
+    @ApiOperation(value = "Update an existing contact's address", notes = "Only the fields sent are "
+            + "changed, send a field as null to clear it", tags = {"contact"})
     @ApiResponses(value = {
         @ApiResponse(code = 200, message = "successful operation"),
+        @ApiResponse(code = 400, message = "No address field sent"),
         @ApiResponse(code = 404, message = "Contact not found")})
     @PatchMapping("/contacts/{contactId}")
     public ResponseEntity<Void> updateAddress(
@@ -182,7 +498,7 @@ public class ContactController {
                     required = true)
             @PathVariable long contactId,
             @ApiParam("Contact's address to update.")
-            @RequestBody Address address) {
+            @Valid @RequestBody Address address) {
         try {
             contactService.updateAddress(contactId, address);
             return ResponseEntity.ok().build();
@@ -190,6 +506,10 @@ public class ContactController {
             // log exception first, then return Not Found (404)
             logger.error(ex.getMessage());
             return ResponseEntity.notFound().build();
+        } catch (BadResourceException ex) {
+            // log exception first, then return Bad Request (400)
+            logger.error(ex.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
     }
 
@@ -212,4 +532,176 @@ public class ContactController {
             return ResponseEntity.notFound().build();
         }
     }
+
+    @ApiOperation(value = "Deletes contacts in bulk", notes = "Either by ids or by name (%name% "
+            + "format). Deleted in chunks, each committed on its own.", tags = {"contact"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation, returns number of contacts deleted",
+                response = Long.class),
+        @ApiResponse(code = 400, message = "Neither or both of ids and name given")})
+    @DeleteMapping(path = "/contacts")
+    public ResponseEntity<Long> deleteContacts(
+            @ApiParam("Ids of the contacts to delete, comma separated.")
+            @RequestParam(value = "ids", required = false) List<Long> ids,
+            @ApiParam("Delete all contacts whose name contains this.")
+            @RequestParam(value = "name", required = false) String name) {
+        boolean byIds = ids != null && !ids.isEmpty();
+        if (byIds == !StringUtils.isEmpty(name)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        if (byIds) {
+            return ResponseEntity.ok(contactBatchService.deleteAllById(ids));
+        } else {
+            return ResponseEntity.ok(contactBatchService.deleteAllByName(name));
+        }
+    }
+
+    /**
+     * The page of contacts asked for, or only the given fields of them when
+     * fields is not null.
+     */
+    private List<?> findPage(String phone, String phoneMatch, String name, boolean keyset, Long afterId, 
+            List<String> fields, int pageNumber, int rowPerPage) throws BadResourceException {
+        boolean sparse = fields != null;
+        if (!StringUtils.isEmpty(phone)) {
+            return sparse
+                    ? contactService.findAllByPhone(phone, phoneMatch, fields, pageNumber, rowPerPage)
+                    : contactService.findAllByPhone(phone, phoneMatch, pageNumber, rowPerPage);
+        }
+        if (!keyset) {
+            if (StringUtils.isEmpty(name)) {
+                return sparse
+                        ? contactService.findAll(fields, pageNumber, rowPerPage)
+                        : contactService.findAll(pageNumber, rowPerPage);
+            } else {
+                return sparse
+                        ? contactService.findAllByName(name, fields, pageNumber, rowPerPage)
+                        : contactService.findAllByName(name, pageNumber, rowPerPage);
+            }
+        }
+        if (sparse) {
+            return contactService.findAllAfter(afterId, name, fields, rowPerPage);
+        } else if (StringUtils.isEmpty(name)) {
+            return contactService.findAllAfter(afterId, rowPerPage);
+        } else {
+            return contactService.findAllByNameAfter(name, afterId, rowPerPage);
+        }
+    }
+
+    private ResponseEntity.BodyBuilder pageResponse(HttpStatus status, List<?> contacts, boolean keyset, 
+            int rowPerPage) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (keyset && contacts.size() == rowPerPage) {
+            response.header(NEXT_CURSOR_HEADER, PageCursor.encode(idOf(contacts.get(contacts.size() - 1))));
+        }
+        return response;
+    }
+
+    /**
+     * Strong ETag of a page: a hash of the ids and versions of its contacts,
+     * in order, and of the format it is written in. The same for the contacts
+     * and for just their id and version, so either can validate a request.
+     */
+    private String pageETag(List<?> contacts, String accept) {
+        StringBuilder tag = new StringBuilder(prefersXml(accept) ? "xml" : "json");
+        for (Object contact : contacts) {
+            tag.append(',').append(idOf(contact)).append(':').append(versionOf(contact));
+        }
+        return DigestUtils.md5DigestAsHex(tag.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Contacts are written from their cached serialized form, as JSON or XML
+     * following the Accept header; sparse results go through the converters.
+     * Either way the body, and a page's ETag, vary by Accept.
+     */
+    @SuppressWarnings("unchecked")
+    private ResponseEntity<?> listBody(ResponseEntity.BodyBuilder response, List<?> contacts, 
+            boolean sparse, String accept) {
+        response.varyBy(HttpHeaders.ACCEPT);
+        if (sparse) {
+            return response.body(contacts);
+        }
+        if (prefersXml(accept)) {
+            return response.contentType(MediaType.APPLICATION_XML)
+                    .body(contactResponseCache.xmlList((List<Contact>) contacts));
+        }
+        return response.contentType(MediaType.APPLICATION_JSON)
+                .body(contactResponseCache.jsonArray((List<Contact>) contacts));
+    }
+
+    private boolean prefersXml(String accept) {
+        if (StringUtils.isEmpty(accept)) {
+            return false;
+        }
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            MediaType.sortBySpecificityAndQuality(mediaTypes);
+            for (MediaType mediaType : mediaTypes) {
+                // JSON first on a tie, as the message converters do
+                if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                    return false;
+                }
+                if (mediaType.isCompatibleWith(MediaType.APPLICATION_XML)) {
+                    return true;
+                }
+            }
+        } catch (InvalidMediaTypeException ex) {
+            logger.error(ex.getMessage());
+        }
+        return false;
+    }
+
+    private Long idOf(Object contact) {
+        if (contact instanceof Contact) {
+            return ((Contact) contact).getId();
+        }
+        return (Long) ((Map<?, ?>) contact).get("id");
+    }
+
+    /**
+     * Whether an If-None-Match value lists the given ETag, compared weakly
+     * as RFC 7232 asks for If-None-Match.
+     */
+    private boolean matches(String ifNoneMatch, String etag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || tag.equals("\"" + etag + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Long versionOf(Object contact) {
+        if (contact instanceof Contact) {
+            return ((Contact) contact).getVersion();
+        }
+        return (Long) ((Map<?, ?>) contact).get("version");
+    }
+
+    /**
+     * Version from an If-Match value such as {@code "3"}, {@code W/"3"} or
+     * {@code 3}; null when absent or {@code *}, meaning any version.
+     */
+    private Long parseVersion(String ifMatch) throws BadResourceException {
+        if (StringUtils.isEmpty(ifMatch) || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException ex) {
+            BadResourceException exc = new BadResourceException("Invalid If-Match");
+            exc.addErrorMessage("If-Match is not a contact version: " + ifMatch);
+            throw exc;
+        }
+    }
 }
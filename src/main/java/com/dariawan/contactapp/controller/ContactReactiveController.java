@@ -0,0 +1,131 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.controller;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.repository.ContactReactiveRepository;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read-only contact endpoints on R2DBC, enabled with
+ * {@code contactapp.r2dbc.enabled=true}. Spring MVC handles the returned
+ * Flux and Mono asynchronously, so no request thread waits on the database;
+ * for {@code application/stream+json} each contact is written as it arrives,
+ * the next one requested only after it is written.
+ */
+@Api(description = "Non-blocking endpoints for Retrieving Contacts.", tags = {"contact-reactive"})
+@RestController
+@RequestMapping("/api/reactive")
+@ConditionalOnProperty(name = "contactapp.r2dbc.enabled", havingValue = "true")
+public class ContactReactiveController {
+
+    private final int ROW_PER_PAGE = 5;
+    
+    private final int MAX_ROW_PER_PAGE = 100;
+
+    @Autowired
+    private ContactReactiveRepository contactReactiveRepository;
+
+    @ApiOperation(value = "Find Contacts by name", notes = "Name search by %name% format", 
+            tags = {"contact-reactive"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation", response = Contact.class, 
+                responseContainer = "List")})
+    @GetMapping(value = "/contacts", 
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE})
+    public Flux<Contact> findAll(
+            @ApiParam(value = "Page number, default is 1", example = "1") 
+            @RequestParam(value = "page", defaultValue = "1") int pageNumber,
+            @ApiParam("Name of the contact for search.") @RequestParam(required = false) String name,
+            @ApiParam(value = "Number of contacts per page, default is 5, maximum is 100",
+                    example = "5") @RequestParam(value = "size", required = false) Integer size) {
+        int rowPerPage = size == null ? ROW_PER_PAGE : Math.max(1, Math.min(size, MAX_ROW_PER_PAGE));
+        long offset = (long) (Math.max(1, pageNumber) - 1) * rowPerPage;
+        if (StringUtils.isEmpty(name)) {
+            return contactReactiveRepository.findAll(offset, rowPerPage);
+        } else {
+            return contactReactiveRepository.findByNameContaining(name, offset, rowPerPage);
+        }
+    }
+
+    @ApiOperation(value = "Stream all contacts", notes = "Every contact, or those whose name "
+            + "contains the given name, in id order as a stream of JSON objects", 
+            tags = {"contact-reactive"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation", response = Contact.class, 
+                responseContainer = "List")})
+    @GetMapping(value = "/contacts/stream", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<Contact> stream(
+            @ApiParam("Name of the contact for search.") @RequestParam(required = false) String name) {
+        return contactReactiveRepository.streamAll(StringUtils.isEmpty(name) ? null : name);
+    }
+
+    @ApiOperation(value = "Find contact by ID", notes = "Returns a single contact", 
+            tags = {"contact-reactive"})
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "successful operation", response = Contact.class),
+        @ApiResponse(code = 404, message = "Contact not found")})
+    @GetMapping(value = "/contacts/{contactId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Contact>> findContactById(
+            @ApiParam(name = "contactId",
+                    value = "Id of the contact to be obtained. Cannot be empty.",
+                    example = "1",
+                    required = true)
+            @PathVariable long contactId) {
+        return contactReactiveRepository.findById(contactId)
+                .map(ResponseEntity::ok)  // return 200, with json body
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -41,15 +41,21 @@ package com.dariawan.contactapp.domain;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
 import javax.validation.constraints.Size;
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.Setter;
 
 @ApiModel(description = "Class representing an address.")
 @Getter
-@Setter
 public class Address implements Serializable {
 
+    public static final String ADDRESS1 = "address1";
+    public static final String ADDRESS2 = "address2";
+    public static final String ADDRESS3 = "address3";
+    public static final String POSTAL_CODE = "postalCode";
+
     @ApiModelProperty(notes = "Address line 1 of the contact.", 
             example = "888 Constantine Ave, #54", required = false, position = 0)
     @Size(max = 50)
@@ -68,5 +74,38 @@ public class Address implements Serializable {
     @ApiModelProperty(notes = "Postal code of the contact.", 
             example = "32106", required = false, position = 3)
     @Size(max = 20)
-    private String postalCode;    
+    private String postalCode;
+    
+    // fields that were set, so a PATCH leaves omitted ones untouched
+    // (an explicit null in the request still counts as set)
+    @Getter(AccessLevel.NONE)
+    private final transient Set<String> presentFields = new HashSet<>();
+
+    public void setAddress1(String address1) {
+        this.address1 = address1;
+        presentFields.add(ADDRESS1);
+    }
+
+    public void setAddress2(String address2) {
+        this.address2 = address2;
+        presentFields.add(ADDRESS2);
+    }
+
+    public void setAddress3(String address3) {
+        this.address3 = address3;
+        presentFields.add(ADDRESS3);
+    }
+
+    public void setPostalCode(String postalCode) {
+        this.postalCode = postalCode;
+        presentFields.add(POSTAL_CODE);
+    }
+
+    public boolean isPresent(String field) {
+        return presentFields.contains(field);
+    }
+
+    public boolean hasPresentFields() {
+        return !presentFields.isEmpty();
+    }
 }
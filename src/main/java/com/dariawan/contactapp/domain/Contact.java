@@ -38,6 +38,8 @@
  */
 package com.dariawan.contactapp.domain;
 
+import com.dariawan.contactapp.util.PhoneNumbers;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import java.io.Serializable;
@@ -46,15 +48,21 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 @ApiModel(description = "Class representing a contact in the application.")
 @Entity
@@ -69,7 +77,16 @@ public class Contact implements Serializable {
     @ApiModelProperty(notes = "Unique identifier of the Contact.", 
             example = "1", required = true, position = 0)
     @Id
-    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator = "contact_id_seq")
+    // pooled-lo: one nextval reserves increment_size ids, which also lets
+    // Hibernate batch inserts (IDENTITY disables JDBC batching)
+    @GenericGenerator(name = "contact_id_seq", 
+            strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = {
+                @Parameter(name = "sequence_name", value = "contact_id_seq"),
+                @Parameter(name = "increment_size", value = "50"),
+                @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     private Long id;
     
     @ApiModelProperty(notes = "Name of the contact.", 
@@ -84,6 +101,19 @@ public class Contact implements Serializable {
     @Size(max = 25)
     private String phone;
     
+    // digits of phone, maintained for indexed lookup (see src/sql/contact_phone.sql)
+    @ApiModelProperty(hidden = true)
+    @JsonIgnore
+    @Column(name = "phone_digits", length = 25)
+    @Setter(AccessLevel.NONE)
+    private String phoneDigits;
+    
+    @ApiModelProperty(hidden = true)
+    @JsonIgnore
+    @Column(name = "phone_digits_rev", length = 25)
+    @Setter(AccessLevel.NONE)
+    private String phoneDigitsReversed;
+    
     @ApiModelProperty(notes = "Email address of the contact.", 
             example = "jessica@ngilang.com", required = false, position = 3)
     // @Pattern(regexp ="^[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,6}$", flags={CASE_INSENSITIVE})
@@ -114,5 +144,19 @@ public class Contact implements Serializable {
     @ApiModelProperty(notes = "Notes about the contact.", 
             example = "Meet her at Spring Boot Conference", required = false, position = 8)
     @Column(length = 4000)
-    private String note;    
+    @Size(max = 4000)
+    private String note;
+    
+    @ApiModelProperty(notes = "Version of the contact, incremented on every update. "
+            + "Pass it in If-Match to update only if nobody changed the contact meanwhile.", 
+            example = "0", required = false, position = 9, readOnly = true)
+    @Version
+    private Long version;
+    
+    @PrePersist
+    @PreUpdate
+    void normalizePhone() {
+        phoneDigits = PhoneNumbers.digits(phone);
+        phoneDigitsReversed = PhoneNumbers.reverse(phoneDigits);
+    }
 }
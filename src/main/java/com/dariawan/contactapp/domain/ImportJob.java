@@ -0,0 +1,92 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.domain;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import lombok.Getter;
+import lombok.Setter;
+
+@ApiModel(description = "Class representing the progress of a CSV import.")
+@Getter
+@Setter
+public class ImportJob implements Serializable {
+
+    public enum State {
+        QUEUED, STAGING, MERGING, COMPLETED, FAILED
+    }
+
+    @ApiModelProperty(notes = "Unique identifier of the import.", position = 0)
+    private String id;
+
+    @ApiModelProperty(notes = "Current state of the import.", position = 1)
+    private volatile State state = State.QUEUED;
+
+    @ApiModelProperty(notes = "CSV records read so far, header excluded.", position = 2)
+    private volatile long recordsRead;
+
+    @ApiModelProperty(notes = "Records that passed validation and were staged.", position = 3)
+    private volatile long recordsStaged;
+
+    @ApiModelProperty(notes = "Records that failed validation.", position = 4)
+    private volatile long recordsRejected;
+
+    @ApiModelProperty(notes = "Contacts inserted by the merge.", position = 5)
+    private volatile long contactsInserted;
+
+    @ApiModelProperty(notes = "Contacts updated by the merge (records with an existing id).", position = 6)
+    private volatile long contactsUpdated;
+
+    @ApiModelProperty(notes = "Rejected records, index is the record number (1 is the first after the header). "
+            + "Only the first rejections are kept.", position = 7)
+    private List<BatchError> rejections = new CopyOnWriteArrayList<>();
+
+    @ApiModelProperty(notes = "Why the import failed.", position = 8)
+    private volatile String message;
+
+    @ApiModelProperty(notes = "When the import started.", position = 9)
+    private volatile Date startedAt;
+
+    @ApiModelProperty(notes = "When the import finished.", position = 10)
+    private volatile Date finishedAt;
+}
@@ -0,0 +1,91 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.jdbc;
+
+import javax.persistence.EntityManagerFactory;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs {@link ReadOnly} methods in the read-only {@link RoutingContext}. While
+ * they read from a replica, the request's session only reads the second-level
+ * cache: a replica lagging behind a write that has just evicted a contact
+ * would otherwise put the old contact back, for everyone and until it expires.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "contactapp.routing.enabled", havingValue = "true")
+public class ReadOnlyRoutingAspect {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Around("@annotation(com.dariawan.contactapp.jdbc.ReadOnly)")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean outer = RoutingContext.enterReadOnly();
+        Session session = !outer && RoutingContext.useReplica() ? boundSession() : null;
+        CacheMode cacheMode = session != null ? session.getCacheMode() : null;
+        if (session != null) {
+            session.setCacheMode(CacheMode.GET);
+        }
+        try {
+            return joinPoint.proceed();
+        } finally {
+            if (session != null) {
+                session.setCacheMode(cacheMode);
+            }
+            RoutingContext.exitReadOnly(outer);
+        }
+    }
+
+    // the request's entity manager, when open in view
+    private Session boundSession() {
+        EntityManagerHolder holder = (EntityManagerHolder) 
+                TransactionSynchronizationManager.getResource(entityManagerFactory);
+        return holder != null ? holder.getEntityManager().unwrap(Session.class) : null;
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * Hands out connections to the primary, or to one of the replicas while
+ * {@link RoutingContext#useReplica()}: inside a {@link ReadOnly} method of a
+ * request that has not written. Replicas are picked round robin, or by the
+ * fewest connections in use and awaited ({@link Balance#LEAST_PENDING}). A
+ * replica that cannot give a connection is skipped for the primary, so reads
+ * keep working while it is down.
+ * <p>
+ * The connection is chosen when it is taken. With routing enabled Hibernate
+ * takes one at the first statement of each transaction and releases it when
+ * the transaction ends (see {@link ReplicaRoutingPostProcessor}), also when
+ * the session stays open in view.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    public enum Balance {
+        ROUND_ROBIN, LEAST_PENDING
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final Balance balance;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, Balance balance) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.balance = balance;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!replicas.isEmpty() && RoutingContext.useReplica()) {
+            try {
+                return nextReplica().getConnection();
+            } catch (SQLException ex) {
+                logger.warn("No replica connection, reading from the primary: " + ex.getMessage());
+            }
+        }
+        RoutingContext.primaryUsed();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (!replicas.isEmpty() && RoutingContext.useReplica()) {
+            try {
+                return nextReplica().getConnection(username, password);
+            } catch (SQLException ex) {
+                logger.warn("No replica connection, reading from the primary: " + ex.getMessage());
+            }
+        }
+        RoutingContext.primaryUsed();
+        return primary.getConnection(username, password);
+    }
+
+    DataSource nextReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        if (balance == Balance.ROUND_ROBIN || size == 1) {
+            return replicas.get(start);
+        }
+        // starting from the round robin position, so ties are spread
+        DataSource least = replicas.get(start);
+        int leastPending = pending(least);
+        for (int i = 1; i < size && leastPending > 0; i++) {
+            DataSource replica = replicas.get((start + i) % size);
+            int pending = pending(replica);
+            if (pending < leastPending) {
+                least = replica;
+                leastPending = pending;
+            }
+        }
+        return least;
+    }
+
+    private static int pending(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            if (pool != null) {
+                return pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Unwraps to the primary, so pool metrics and the bulkhead see its pool.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        if (iface.isInstance(primary)) {
+            return (T) primary;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || iface.isInstance(primary) || primary.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.jdbc;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Puts the pooled datasource behind a {@link ReplicaRoutingDataSource} with a
+ * pool per {@code contactapp.routing.replicas} URL, enabled with
+ * {@code contactapp.routing.enabled=true}. Replica pools copy the primary's
+ * settings and credentials, are read-only, and do not hold up startup when a
+ * replica is down, and report the same hikaricp metrics, tagged with pool
+ * names replica-1, replica-2... Runs before
+ * {@link SqlStatisticsPostProcessor}, so statements on replicas are counted
+ * too.
+ * <p>
+ * Spring has Hibernate hold a session's connection until the session closes,
+ * which with open in view is the end of the request: a request reading and
+ * then writing would write on the replica. Routing has Hibernate release the
+ * connection after each transaction instead, so each transaction takes one
+ * from the datasource it is routed to, and Spring no longer prepares the
+ * connection of read-only transactions: resetting it afterwards would take
+ * one again, and hold it.
+ */
+@Component
+@ConditionalOnProperty(name = "contactapp.routing.enabled", havingValue = "true")
+public class ReplicaRoutingPostProcessor implements BeanPostProcessor, Ordered, MeterBinder, 
+        DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // comma separated JDBC URLs
+    @Value("${contactapp.routing.replicas:}")
+    private String[] replicaUrls;
+
+    // round-robin or least-pending
+    @Value("${contactapp.routing.balance:round-robin}")
+    private String balance;
+
+    private final List<HikariDataSource> replicas = new ArrayList<>();
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HibernateJpaVendorAdapter) {
+            ((HibernateJpaVendorAdapter) bean).getJpaDialect().setPrepareConnection(false);
+        }
+        if (bean instanceof LocalContainerEntityManagerFactoryBean) {
+            ((LocalContainerEntityManagerFactoryBean) bean).getJpaPropertyMap().put(
+                    AvailableSettings.CONNECTION_HANDLING,
+                    PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource && replicas.isEmpty()) {
+            HikariDataSource primary = (HikariDataSource) bean;
+            for (String url : replicaUrls) {
+                if (StringUtils.hasText(url)) {
+                    HikariConfig config = new HikariConfig();
+                    primary.copyStateTo(config);
+                    config.setJdbcUrl(url.trim());
+                    config.setPoolName("replica-" + (replicas.size() + 1));
+                    config.setReadOnly(true);
+                    config.setInitializationFailTimeout(-1);
+                    replicas.add(new HikariDataSource(config));
+                }
+            }
+            ReplicaRoutingDataSource.Balance policy = ReplicaRoutingDataSource.Balance.valueOf(
+                    balance.trim().toUpperCase().replace('-', '_'));
+            logger.info("Routing read-only calls to " + replicas.size() + " replica(s), " 
+                    + policy.name().toLowerCase().replace('_', '-'));
+            return new ReplicaRoutingDataSource(primary, replicas, policy);
+        }
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (HikariDataSource replica : replicas) {
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(HikariDataSource::close);
+    }
+}
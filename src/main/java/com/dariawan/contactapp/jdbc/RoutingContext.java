@@ -0,0 +1,120 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.jdbc;
+
+/**
+ * What the current thread is doing, as far as choosing between primary and
+ * replicas goes: whether it is inside a {@link ReadOnly} method, and, for an
+ * API request, whether the request must see the primary because it (or the
+ * client, shortly before) wrote.
+ */
+public final class RoutingContext {
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    private static final ThreadLocal<Request> REQUEST = new ThreadLocal<>();
+
+    private RoutingContext() {
+    }
+
+    /**
+     * Enters a read-only method, returning whether the thread already was in
+     * one, to be passed back to {@link #exitReadOnly(boolean)}.
+     */
+    public static boolean enterReadOnly() {
+        boolean outer = READ_ONLY.get() != null;
+        READ_ONLY.set(Boolean.TRUE);
+        return outer;
+    }
+
+    public static void exitReadOnly(boolean outer) {
+        if (!outer) {
+            READ_ONLY.remove();
+        }
+    }
+
+    public static Request beginRequest(boolean pinnedToPrimary) {
+        Request request = new Request(pinnedToPrimary);
+        REQUEST.set(request);
+        return request;
+    }
+
+    public static void endRequest() {
+        REQUEST.remove();
+    }
+
+    /**
+     * Whether connections taken now may come from a replica.
+     */
+    public static boolean useReplica() {
+        if (READ_ONLY.get() == null) {
+            return false;
+        }
+        Request request = REQUEST.get();
+        return request == null || !(request.pinnedToPrimary || request.written);
+    }
+
+    /**
+     * Notes that the primary was used for something other than a read, so
+     * the rest of the request reads from the primary too.
+     */
+    static void primaryUsed() {
+        Request request = REQUEST.get();
+        if (request != null && READ_ONLY.get() == null) {
+            request.written = true;
+        }
+    }
+
+    /**
+     * Routing state of one request; only touched by the thread serving it.
+     */
+    public static final class Request {
+
+        private final boolean pinnedToPrimary;
+        private boolean written;
+
+        private Request(boolean pinnedToPrimary) {
+            this.pinnedToPrimary = pinnedToPrimary;
+        }
+
+        public boolean hasWritten() {
+            return written;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.jdbc;
+
+/**
+ * Counts the statements the current thread sends to the database between
+ * {@link #begin()} and {@link #end()}, and the time they take. Fed by the
+ * datasource proxy of {@link SqlStatisticsPostProcessor}; a batch counts as
+ * one statement, being one round trip. Statements outside begin/end are not
+ * counted.
+ */
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<Stats> CURRENT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    public static Stats begin() {
+        Stats stats = new Stats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static Stats end() {
+        Stats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    static void record(long elapsedMillis) {
+        Stats stats = CURRENT.get();
+        if (stats != null) {
+            stats.count++;
+            stats.elapsedMillis += elapsedMillis;
+        }
+    }
+
+    /**
+     * Statements counted so far; only touched by the thread that began it.
+     */
+    public static final class Stats {
+
+        private int count;
+        private long elapsedMillis;
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.metrics;
+
+import com.dariawan.contactapp.exception.BadResourceException;
+import com.dariawan.contactapp.exception.ResourceAlreadyExistsException;
+import com.dariawan.contactapp.exception.ResourceConflictException;
+import com.dariawan.contactapp.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every public {@code ContactService} method as {@value #TIMER}, tagged
+ * with the method, named with its parameter types so overloads get timers of
+ * their own (e.g. {@code findAll(int,int)}), and its outcome. Histogram buckets are switched on in
+ * application.properties, as for the HTTP and pool timers.
+ */
+@Aspect
+@Component
+public class ContactServiceMetrics {
+
+    public static final String TIMER = "contact.service";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Method, String> methodTags = new ConcurrentHashMap<>();
+
+    @Around("execution(public * com.dariawan.contactapp.service.ContactService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = Outcomes.OK;
+        try {
+            return joinPoint.proceed();
+        } catch (ResourceNotFoundException ex) {
+            outcome = Outcomes.NOT_FOUND;
+            throw ex;
+        } catch (BadResourceException ex) {
+            outcome = Outcomes.BAD_RESOURCE;
+            throw ex;
+        } catch (ResourceConflictException | ResourceAlreadyExistsException ex) {
+            outcome = Outcomes.CONFLICT;
+            throw ex;
+        } catch (Throwable ex) {
+            outcome = Outcomes.ERROR;
+            throw ex;
+        } finally {
+            sample.stop(Timer.builder(TIMER)
+                    .description("ContactService calls")
+                    .tag("method", methodTag(((MethodSignature) joinPoint.getSignature()).getMethod()))
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private String methodTag(Method method) {
+        return methodTags.computeIfAbsent(method, m -> Arrays.stream(m.getParameterTypes())
+                .map(Class::getSimpleName)
+                .collect(Collectors.joining(",", m.getName() + "(", ")")));
+    }
+}
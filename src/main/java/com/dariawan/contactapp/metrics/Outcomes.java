@@ -0,0 +1,74 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.metrics;
+
+/**
+ * Outcome tag values shared by the service and HTTP timers, named after the
+ * exceptions the controllers turn into statuses.
+ */
+public final class Outcomes {
+
+    public static final String OK = "ok";
+    public static final String NOT_FOUND = "not_found";
+    public static final String BAD_RESOURCE = "bad_resource";
+    public static final String CONFLICT = "conflict";
+    public static final String CLIENT_ERROR = "client_error";
+    public static final String ERROR = "error";
+
+    private Outcomes() {
+    }
+
+    public static String of(int status) {
+        if (status < 400) {
+            return OK;
+        }
+        switch (status) {
+            case 400:
+                return BAD_RESOURCE;
+            case 404:
+                return NOT_FOUND;
+            case 409:
+            case 412:
+                return CONFLICT;
+            default:
+                // by range, as non-standard codes have no HttpStatus
+                return status < 500 ? CLIENT_ERROR : ERROR;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.repository;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.specification.ContactSpecification;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads of {@link ContactRepository} over R2DBC: findAll, findById and the
+ * name search, without blocking a thread per query. Rows are mapped by hand,
+ * the JPA mapping of {@link Contact} means nothing to R2DBC. Writes stay
+ * with JPA.
+ */
+@Repository
+@ConditionalOnProperty(name = "contactapp.r2dbc.enabled", havingValue = "true")
+public class ContactReactiveRepository {
+
+    private static final String SELECT = "select id, name, phone, email, address1, address2, address3, "
+            + "postal_code, note, version from contact";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    public Mono<Contact> findById(Long id) {
+        return databaseClient.execute(SELECT + " where id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> toContact(row))
+                .one();
+    }
+
+    public Flux<Contact> findAll(long offset, int limit) {
+        return databaseClient.execute(SELECT + " order by id limit :limit offset :offset")
+                .bind("limit", limit)
+                .bind("offset", offset)
+                .map((row, metadata) -> toContact(row))
+                .all();
+    }
+
+    public Flux<Contact> findByNameContaining(String name, long offset, int limit) {
+        return databaseClient.execute(SELECT 
+                + " where name like :name escape '\\' order by id limit :limit offset :offset")
+                .bind("name", ContactSpecification.contains(name))
+                .bind("limit", limit)
+                .bind("offset", offset)
+                .map((row, metadata) -> toContact(row))
+                .all();
+    }
+
+    /**
+     * All contacts, or those whose name contains {@code name}, in id order.
+     * Rows are emitted as the subscriber requests them.
+     */
+    public Flux<Contact> streamAll(String name) {
+        if (name == null) {
+            return databaseClient.execute(SELECT + " order by id")
+                    .map((row, metadata) -> toContact(row))
+                    .all();
+        }
+        return databaseClient.execute(SELECT + " where name like :name escape '\\' order by id")
+                .bind("name", ContactSpecification.contains(name))
+                .map((row, metadata) -> toContact(row))
+                .all();
+    }
+
+    private static Contact toContact(Row row) {
+        Contact contact = new Contact();
+        contact.setId(row.get("id", Long.class));
+        contact.setName(row.get("name", String.class));
+        contact.setPhone(row.get("phone", String.class));
+        contact.setEmail(row.get("email", String.class));
+        contact.setAddress1(row.get("address1", String.class));
+        contact.setAddress2(row.get("address2", String.class));
+        contact.setAddress3(row.get("address3", String.class));
+        contact.setPostalCode(row.get("postal_code", String.class));
+        contact.setNote(row.get("note", String.class));
+        contact.setVersion(row.get("version", Long.class));
+        return contact;
+    }
+}
@@ -39,9 +39,43 @@
 package com.dariawan.contactapp.repository;
 
 import com.dariawan.contactapp.domain.Contact;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface ContactRepository extends PagingAndSortingRepository<Contact, Long>, 
-        JpaSpecificationExecutor<Contact> {
+        JpaSpecificationExecutor<Contact>, ContactRepositoryCustom {
+
+    // Slice instead of Page, so no count query is issued
+    Slice<Contact> findAllBy(Pageable pageable);
+
+    // keyset (seek) pagination, returning List so no count query is issued
+    List<Contact> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    List<Contact> findByNameContainingAndIdGreaterThanOrderByIdAsc(String name, Long id, Pageable pageable);
+
+    // validates conditional requests without loading the contact
+    @Query("select c.version from Contact c where c.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // server-side cursor for exports: PgJDBC streams in fetch-size batches
+    // when inside a transaction, must be consumed in a read-only transaction
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HINT_READONLY, value = "true"),
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select c from Contact c order by c.id")
+    Stream<Contact> streamAll();
 }
@@ -0,0 +1,143 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.repository;
+
+import com.dariawan.contactapp.domain.Address;
+import com.dariawan.contactapp.domain.Contact;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface ContactRepositoryCustom {
+
+    /**
+     * Column an upsert matches existing contacts on.
+     */
+    enum UpsertKey {
+        /** primary key, contacts without id are always inserted */
+        ID,
+        /** lower(email), needs the unique index from src/sql/contact_upsert.sql */
+        EMAIL
+    }
+
+    /**
+     * Like {@code findAll(Specification, Pageable)}, but returns a {@link Slice}
+     * so no {@code count(*)} query is issued. One extra row is fetched to tell
+     * whether a next slice exists.
+     */
+    Slice<Contact> findSlice(Specification<Contact> spec, Pageable pageable);
+
+    /**
+     * Selects only the given attributes of the contacts matching {@code spec},
+     * so unused columns (such as the 4000-char note) are not read at all.
+     *
+     * @return one map per contact, keyed by attribute name in the given order
+     */
+    List<Map<String, Object>> findFields(Specification<Contact> spec, List<String> fields, 
+            Pageable pageable);
+
+    /**
+     * Overwrites the contact with a single {@code UPDATE ... WHERE id = ?
+     * [AND version = ?] RETURNING version}, without loading it first, bumps
+     * its version and sets the new one on the contact.
+     *
+     * @param expectedVersion version the row must still have, null to update
+     * whatever the version is
+     * @return number of rows updated, 0 if the id does not exist or the
+     * version did not match
+     */
+    int updateIfVersion(Contact contact, Long expectedVersion);
+
+    /**
+     * Sets only the address fields present in {@code address} with a single
+     * {@code UPDATE}, without loading the contact, and bumps its version.
+     *
+     * @return number of rows updated, 0 if the id does not exist
+     */
+    int updateAddress(Long id, Address address);
+
+    /**
+     * Overwrites all contacts with one {@code UPDATE ... FROM unnest(...)},
+     * bumping each version by the matching {@code versionIncrements} entry
+     * (the number of changes the row stands for). Ids must be unique within
+     * the list.
+     *
+     * @return new version by id of the contacts updated, those missing no
+     * longer exist
+     */
+    Map<Long, Long> updateAll(List<Contact> contacts, int[] versionIncrements);
+
+    /**
+     * Sets the address fields present in each {@code addresses} entry of the
+     * contact with the same position in {@code ids}, with one {@code UPDATE
+     * ... FROM unnest(...)}, bumping versions as {@link #updateAll}.
+     *
+     * @return new version by id of the contacts updated, those missing no
+     * longer exist
+     */
+    Map<Long, Long> updateAddresses(List<Long> ids, List<Address> addresses, int[] versionIncrements);
+
+    /**
+     * Ids of contacts matching {@code spec} after {@code afterId}, in id
+     * order, so large sets can be walked in bounded chunks.
+     */
+    List<Long> findIds(Specification<Contact> spec, Long afterId, int limit);
+
+    /**
+     * Deletes with a single {@code DELETE ... WHERE id IN (...)}, without
+     * loading the contacts first.
+     *
+     * @return number of rows deleted
+     */
+    int deleteAllByIdIn(Collection<Long> ids);
+
+    /**
+     * Inserts or updates all contacts with one {@code INSERT ... SELECT FROM
+     * unnest(...) ON CONFLICT ... DO UPDATE}. Keys must be unique within the
+     * list. Inserted contacts get ids from contact_id_seq, also when they
+     * came with an id not stored yet. Each contact gets its id and version
+     * set from the stored row.
+     *
+     * @return for each contact, true if it was inserted, false if updated
+     */
+    boolean[] upsertAll(List<Contact> contacts, UpsertKey key);
+}
@@ -0,0 +1,508 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.repository;
+
+import com.dariawan.contactapp.domain.Address;
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.util.PhoneNumbers;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+public class ContactRepositoryCustomImpl implements ContactRepositoryCustom {
+
+    private static final String UPDATE_SQL = "update contact set name = :name, phone = :phone, "
+            + "phone_digits = :phoneDigits, phone_digits_rev = :phoneDigitsReversed, email = :email, "
+            + "address1 = :address1, address2 = :address2, address3 = :address3, "
+            + "postal_code = :postalCode, note = :note, version = version + 1 "
+            + "where id = :id";
+
+    // must match increment_size of Contact.id
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String UPSERT_SQL = "insert into contact (id, name, phone, phone_digits, "
+            + "phone_digits_rev, email, address1, address2, address3, postal_code, note) "
+            + "select * from unnest(?::bigint[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], "
+            + "?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[]) "
+            + "on conflict %s do update set name = excluded.name, phone = excluded.phone, "
+            + "phone_digits = excluded.phone_digits, phone_digits_rev = excluded.phone_digits_rev, "
+            + "email = excluded.email, address1 = excluded.address1, address2 = excluded.address2, "
+            + "address3 = excluded.address3, postal_code = excluded.postal_code, note = excluded.note, "
+            + "version = contact.version + 1 "
+            + "returning id, email, version, (xmax = 0) as inserted";
+
+    private static final String UPDATE_ALL_SQL = "update contact set name = u.name, phone = u.phone, "
+            + "phone_digits = u.phone_digits, phone_digits_rev = u.phone_digits_rev, email = u.email, "
+            + "address1 = u.address1, address2 = u.address2, address3 = u.address3, "
+            + "postal_code = u.postal_code, note = u.note, version = contact.version + u.increment "
+            + "from unnest(?::bigint[], ?::int[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], "
+            + "?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[]) "
+            + "as u(id, increment, name, phone, phone_digits, phone_digits_rev, email, address1, "
+            + "address2, address3, postal_code, note) "
+            + "where contact.id = u.id returning contact.id, contact.version";
+
+    // each address column is only set where its flag is
+    private static final String UPDATE_ADDRESSES_SQL = "update contact set "
+            + "address1 = case when u.set1 then u.address1 else contact.address1 end, "
+            + "address2 = case when u.set2 then u.address2 else contact.address2 end, "
+            + "address3 = case when u.set3 then u.address3 else contact.address3 end, "
+            + "postal_code = case when u.set4 then u.postal_code else contact.postal_code end, "
+            + "version = contact.version + u.increment "
+            + "from unnest(?::bigint[], ?::int[], ?::boolean[], ?::varchar[], ?::boolean[], ?::varchar[], "
+            + "?::boolean[], ?::varchar[], ?::boolean[], ?::varchar[]) "
+            + "as u(id, increment, set1, address1, set2, address2, set3, address3, set4, postal_code) "
+            + "where contact.id = u.id returning contact.id, contact.version";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<Contact> findSlice(Specification<Contact> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Contact> cq = cb.createQuery(Contact.class);
+        Root<Contact> root = cq.from(Contact.class);
+        cq.select(root);
+        if (spec != null) {
+            cq.where(spec.toPredicate(root, cq, cb));
+        }
+        if (pageable.getSort().isSorted()) {
+            cq.orderBy(toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<Contact> query = entityManager.createQuery(cq);
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize() + 1);
+
+        List<Contact> content = query.getResultList();
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public List<Map<String, Object>> findFields(Specification<Contact> spec, List<String> fields, 
+            Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<Contact> root = cq.from(Contact.class);
+        List<Selection<?>> selections = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            selections.add(root.get(field).alias(field));
+        }
+        cq.multiselect(selections);
+        if (spec != null) {
+            cq.where(spec.toPredicate(root, cq, cb));
+        }
+        if (pageable.getSort().isSorted()) {
+            cq.orderBy(toOrders(pageable.getSort(), root, cb));
+        }
+
+        List<Tuple> tuples = entityManager.createQuery(cq)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        List<Map<String, Object>> contacts = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> contact = new LinkedHashMap<>();
+            for (String field : fields) {
+                contact.put(field, tuple.get(field));
+            }
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    @Override
+    @Transactional
+    public int updateIfVersion(Contact contact, Long expectedVersion) {
+        String digits = PhoneNumbers.digits(contact.getPhone());
+        Query query = entityManager.createNativeQuery((expectedVersion == null 
+                ? UPDATE_SQL : UPDATE_SQL + " and version = :version") + " returning version")
+                .setParameter("id", contact.getId())
+                .setParameter("name", contact.getName())
+                .setParameter("phone", contact.getPhone())
+                .setParameter("phoneDigits", digits)
+                .setParameter("phoneDigitsReversed", PhoneNumbers.reverse(digits))
+                .setParameter("email", contact.getEmail())
+                .setParameter("address1", contact.getAddress1())
+                .setParameter("address2", contact.getAddress2())
+                .setParameter("address3", contact.getAddress3())
+                .setParameter("postalCode", contact.getPostalCode())
+                .setParameter("note", contact.getNote());
+        if (expectedVersion != null) {
+            query.setParameter("version", expectedVersion);
+        }
+        // see executeUpdate
+        query.unwrap(NativeQuery.class).addSynchronizedQuerySpace("");
+
+        List<?> versions = query.getResultList();
+        if (versions.isEmpty()) {
+            return 0;
+        }
+        contact.setVersion(((Number) versions.get(0)).longValue());
+        entityManager.getEntityManagerFactory().getCache().evict(Contact.class, contact.getId());
+        return 1;
+    }
+
+    @Override
+    @Transactional
+    public int updateAddress(Long id, Address address) {
+        StringBuilder sql = new StringBuilder("update contact set ");
+        if (address.isPresent(Address.ADDRESS1)) {
+            sql.append("address1 = :address1, ");
+        }
+        if (address.isPresent(Address.ADDRESS2)) {
+            sql.append("address2 = :address2, ");
+        }
+        if (address.isPresent(Address.ADDRESS3)) {
+            sql.append("address3 = :address3, ");
+        }
+        if (address.isPresent(Address.POSTAL_CODE)) {
+            sql.append("postal_code = :postalCode, ");
+        }
+        sql.append("version = version + 1 where id = :id");
+
+        Query query = entityManager.createNativeQuery(sql.toString()).setParameter("id", id);
+        if (address.isPresent(Address.ADDRESS1)) {
+            query.setParameter("address1", address.getAddress1());
+        }
+        if (address.isPresent(Address.ADDRESS2)) {
+            query.setParameter("address2", address.getAddress2());
+        }
+        if (address.isPresent(Address.ADDRESS3)) {
+            query.setParameter("address3", address.getAddress3());
+        }
+        if (address.isPresent(Address.POSTAL_CODE)) {
+            query.setParameter("postalCode", address.getPostalCode());
+        }
+        return executeUpdate(query, id);
+    }
+
+    @Override
+    @Transactional
+    public Map<Long, Long> updateAll(List<Contact> contacts, int[] versionIncrements) {
+        Long[] ids = new Long[contacts.size()];
+        Integer[] increments = new Integer[contacts.size()];
+        String[][] columns = new String[10][contacts.size()];
+        for (int i = 0; i < contacts.size(); i++) {
+            Contact c = contacts.get(i);
+            String digits = PhoneNumbers.digits(c.getPhone());
+            ids[i] = c.getId();
+            increments[i] = versionIncrements[i];
+            columns[0][i] = c.getName();
+            columns[1][i] = c.getPhone();
+            columns[2][i] = digits;
+            columns[3][i] = PhoneNumbers.reverse(digits);
+            columns[4][i] = c.getEmail();
+            columns[5][i] = c.getAddress1();
+            columns[6][i] = c.getAddress2();
+            columns[7][i] = c.getAddress3();
+            columns[8][i] = c.getPostalCode();
+            columns[9][i] = c.getNote();
+        }
+        return executeUpdateAll(UPDATE_ALL_SQL, (conn, ps) -> {
+            ps.setArray(1, conn.createArrayOf("bigint", ids));
+            ps.setArray(2, conn.createArrayOf("int4", increments));
+            for (int col = 0; col < columns.length; col++) {
+                ps.setArray(col + 3, conn.createArrayOf("varchar", columns[col]));
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public Map<Long, Long> updateAddresses(List<Long> ids, List<Address> addresses, int[] versionIncrements) {
+        String[] fields = {Address.ADDRESS1, Address.ADDRESS2, Address.ADDRESS3, Address.POSTAL_CODE};
+        Integer[] increments = new Integer[ids.size()];
+        Boolean[][] present = new Boolean[fields.length][ids.size()];
+        String[][] values = new String[fields.length][ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            Address address = addresses.get(i);
+            increments[i] = versionIncrements[i];
+            String[] row = {address.getAddress1(), address.getAddress2(), address.getAddress3(), 
+                address.getPostalCode()};
+            for (int f = 0; f < fields.length; f++) {
+                present[f][i] = address.isPresent(fields[f]);
+                values[f][i] = row[f];
+            }
+        }
+        return executeUpdateAll(UPDATE_ADDRESSES_SQL, (conn, ps) -> {
+            ps.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            ps.setArray(2, conn.createArrayOf("int4", increments));
+            for (int f = 0; f < fields.length; f++) {
+                ps.setArray(3 + 2 * f, conn.createArrayOf("bool", present[f]));
+                ps.setArray(4 + 2 * f, conn.createArrayOf("varchar", values[f]));
+            }
+        });
+    }
+
+    private interface ArrayBinder {
+        void bind(Connection conn, PreparedStatement ps) throws SQLException;
+    }
+
+    // runs an UPDATE ... RETURNING id, version, evicting the updated contacts
+    private Map<Long, Long> executeUpdateAll(String sql, ArrayBinder binder) {
+        Map<Long, Long> updated = new HashMap<>();
+        entityManager.unwrap(Session.class).doWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                binder.bind(conn, ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        updated.put(rs.getLong(1), rs.getLong(2));
+                    }
+                }
+            }
+        });
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        for (Long id : updated.keySet()) {
+            cache.evict(Contact.class, id);
+        }
+        return updated;
+    }
+
+    @Override
+    public List<Long> findIds(Specification<Contact> spec, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<Contact> root = cq.from(Contact.class);
+        Predicate after = cb.greaterThan(root.<Long>get("id"), afterId == null ? 0L : afterId);
+        cq.select(root.<Long>get("id"))
+                .where(spec == null ? after : cb.and(spec.toPredicate(root, cq, cb), after))
+                .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(cq).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional
+    public int deleteAllByIdIn(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Query query = entityManager.createNativeQuery("delete from contact where id in (:ids)")
+                .setParameter("ids", ids);
+        query.unwrap(NativeQuery.class).addSynchronizedQuerySpace("");
+
+        int deleted = query.executeUpdate();
+        if (deleted > 0) {
+            Cache cache = entityManager.getEntityManagerFactory().getCache();
+            for (Long id : ids) {
+                cache.evict(Contact.class, id);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    @Transactional
+    public boolean[] upsertAll(List<Contact> contacts, UpsertKey key) {
+        boolean[] inserted = new boolean[contacts.size()];
+        if (contacts.isEmpty()) {
+            return inserted;
+        }
+        // rows already stored keep their id, the others get one reserved in pooled-lo blocks;
+        // a sent id not stored yet is replaced too, as it could collide with a block handed
+        // out later
+        Map<Object, Long> storedIds = key == UpsertKey.ID ? findStoredIds(contacts) 
+                : findStoredEmails(contacts);
+        Long[] ids = new Long[contacts.size()];
+        int missing = 0;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = storedIds.get(upsertKeyOf(contacts.get(i), key));
+            if (ids[i] == null) {
+                missing++;
+            }
+        }
+        Iterator<Long> newIds = reserveIds(missing);
+        Map<Object, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            Contact contact = contacts.get(i);
+            if (ids[i] == null) {
+                ids[i] = newIds.next();
+            }
+            positions.put(ids[i], i);
+            if (key == UpsertKey.EMAIL) {
+                positions.put(contact.getEmail(), i);
+            }
+        }
+
+        String sql = String.format(UPSERT_SQL, key == UpsertKey.EMAIL ? "((lower(email)))" : "(id)");
+        Session session = entityManager.unwrap(Session.class);
+        session.doWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                String[][] columns = new String[10][contacts.size()];
+                for (int i = 0; i < contacts.size(); i++) {
+                    Contact c = contacts.get(i);
+                    String digits = PhoneNumbers.digits(c.getPhone());
+                    columns[0][i] = c.getName();
+                    columns[1][i] = c.getPhone();
+                    columns[2][i] = digits;
+                    columns[3][i] = PhoneNumbers.reverse(digits);
+                    columns[4][i] = c.getEmail();
+                    columns[5][i] = c.getAddress1();
+                    columns[6][i] = c.getAddress2();
+                    columns[7][i] = c.getAddress3();
+                    columns[8][i] = c.getPostalCode();
+                    columns[9][i] = c.getNote();
+                }
+                ps.setArray(1, conn.createArrayOf("bigint", ids));
+                for (int col = 0; col < columns.length; col++) {
+                    ps.setArray(col + 2, conn.createArrayOf("varchar", columns[col]));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        boolean isInsert = rs.getBoolean(4);
+                        // inserts carry the id we sent, updates by email keep the stored id
+                        Integer position = isInsert || key == UpsertKey.ID 
+                                ? positions.get(id) : positions.get(rs.getString(2));
+                        Contact contact = contacts.get(position);
+                        contact.setId(id);
+                        contact.setVersion(rs.getLong(3));
+                        inserted[position] = isInsert;
+                    }
+                }
+            }
+        });
+
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        for (int i = 0; i < inserted.length; i++) {
+            if (!inserted[i]) {
+                cache.evict(Contact.class, contacts.get(i).getId());
+            }
+        }
+        return inserted;
+    }
+
+    private static Object upsertKeyOf(Contact contact, UpsertKey key) {
+        return key == UpsertKey.EMAIL ? contact.getEmail().toLowerCase(Locale.ROOT) : contact.getId();
+    }
+
+    // stored id by sent id
+    private Map<Object, Long> findStoredIds(List<Contact> contacts) {
+        List<Long> ids = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            if (contact.getId() != null) {
+                ids.add(contact.getId());
+            }
+        }
+        Map<Object, Long> stored = new HashMap<>();
+        if (!ids.isEmpty()) {
+            List<?> rows = entityManager.createNativeQuery("select id from contact where id in (:ids)")
+                    .setParameter("ids", ids)
+                    .getResultList();
+            for (Object row : rows) {
+                Long id = ((Number) row).longValue();
+                stored.put(id, id);
+            }
+        }
+        return stored;
+    }
+
+    // stored id by lower-cased email; one missed here is still updated, at the cost of an id
+    private Map<Object, Long> findStoredEmails(List<Contact> contacts) {
+        List<String> emails = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            emails.add(contact.getEmail().toLowerCase(Locale.ROOT));
+        }
+        List<?> rows = entityManager.createNativeQuery(
+                "select id, lower(email) from contact where lower(email) in (:emails)")
+                .setParameter("emails", emails)
+                .getResultList();
+        Map<Object, Long> stored = new HashMap<>();
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            stored.put(columns[1], ((Number) columns[0]).longValue());
+        }
+        return stored;
+    }
+
+    private Iterator<Long> reserveIds(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            long base = ((Number) entityManager.createNativeQuery("select nextval('contact_id_seq')")
+                    .getSingleResult()).longValue();
+            for (int i = 0; i < ID_BLOCK_SIZE && ids.size() < count; i++) {
+                ids.add(base + i);
+            }
+        }
+        return ids.iterator();
+    }
+
+    private int executeUpdate(Query query, Long id) {
+        // an empty query space keeps Hibernate from invalidating every cache
+        // region after native DML; only this contact is evicted below
+        query.unwrap(NativeQuery.class).addSynchronizedQuerySpace("");
+
+        int updated = query.executeUpdate();
+        if (updated > 0) {
+            entityManager.getEntityManagerFactory().getCache().evict(Contact.class, id);
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,437 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.search;
+
+import com.dariawan.contactapp.domain.Address;
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.repository.ContactRepository;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory inverted index over contact name, email, note and address fields,
+ * enabled with {@code contactapp.search.enabled=true}.
+ * <p>
+ * Each term maps to a sorted {@code long[]} of contact ids. Posting lists are
+ * copy-on-write: readers never lock, a writer replaces the array of every term
+ * it touches. Writes for the same contact are serialized through the
+ * {@code documents} map, so a document and its postings never diverge.
+ * Matching contacts are served from the indexed snapshot, not from the
+ * database.
+ * <p>
+ * The index is built once the application is ready, while writes already
+ * come in. A document never goes back to an older version, and contacts
+ * written before the build is done are read again afterwards, as the build
+ * may have loaded them before the write, or missed an address update or a
+ * delete applied before it loaded them.
+ */
+@Component
+@ConditionalOnProperty(name = "contactapp.search.enabled", havingValue = "true")
+public class ContactSearchIndex {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private static final long[] EMPTY = new long[0];
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    private final Map<String, long[]> postings = new ConcurrentHashMap<>();
+
+    private final Map<Long, IndexedContact> documents = new ConcurrentHashMap<>();
+
+    // contacts written while the index is being built
+    private final Set<Long> writtenDuringBuild = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean ready = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        long lastId = 0L;
+        List<Contact> batch;
+        do {
+            batch = contactRepository.findByIdGreaterThanOrderByIdAsc(lastId, 
+                    PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (Contact contact : batch) {
+                if (!writtenDuringBuild.contains(contact.getId())) {
+                    put(contact);
+                }
+                lastId = contact.getId();
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+        ready = true;
+
+        Set<Long> written = new HashSet<>(writtenDuringBuild);
+        writtenDuringBuild.clear();
+        for (Contact contact : contactRepository.findAllById(written)) {
+            put(contact);
+            written.remove(contact.getId());
+        }
+        for (Long id : written) {
+            remove(id);
+        }
+        logger.info("Contact search index built: " + documents.size() + " contacts, " 
+                + postings.size() + " terms in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Indexes the contact as given. A contact without version stands for an
+     * unconditional update of the indexed one, which advanced its version by
+     * one, so search results keep carrying the stored version.
+     */
+    public void index(Contact contact) {
+        if (contact == null || contact.getId() == null) {
+            return;
+        }
+        written(contact.getId());
+        put(contact);
+    }
+
+    // an older version than the one indexed is ignored
+    private void put(Contact contact) {
+        final Contact copy = copyOf(contact);
+        final String[] terms = tokenize(copy.getName(), copy.getEmail(), copy.getNote(),
+                copy.getAddress1(), copy.getAddress2(), copy.getAddress3(), copy.getPostalCode());
+        documents.compute(contact.getId(), (id, previous) -> {
+            if (previous != null && previous.contact.getVersion() != null && copy.getVersion() != null
+                    && copy.getVersion() < previous.contact.getVersion()) {
+                return previous;
+            }
+            if (copy.getVersion() == null && previous != null && previous.contact.getVersion() != null) {
+                copy.setVersion(previous.contact.getVersion() + 1);
+            }
+            String[] oldTerms = previous == null ? new String[0] : previous.terms;
+            for (String term : oldTerms) {
+                if (Arrays.binarySearch(terms, term) < 0) {
+                    postings.computeIfPresent(term, (t, ids) -> removeId(ids, id));
+                }
+            }
+            for (String term : terms) {
+                if (Arrays.binarySearch(oldTerms, term) < 0) {
+                    postings.compute(term, (t, ids) -> addId(ids == null ? EMPTY : ids, id));
+                }
+            }
+            return new IndexedContact(copy, terms);
+        });
+    }
+
+    /**
+     * Applies the fields present in {@code address} to the indexed contact,
+     * whose version the update advanced by one.
+     */
+    public void indexAddress(Long id, Address address) {
+        written(id);
+        IndexedContact doc = documents.get(id);
+        if (doc == null) {
+            return;
+        }
+        Contact contact = copyOf(doc.contact);
+        contact.setVersion(null);
+        if (address.isPresent(Address.ADDRESS1)) {
+            contact.setAddress1(address.getAddress1());
+        }
+        if (address.isPresent(Address.ADDRESS2)) {
+            contact.setAddress2(address.getAddress2());
+        }
+        if (address.isPresent(Address.ADDRESS3)) {
+            contact.setAddress3(address.getAddress3());
+        }
+        if (address.isPresent(Address.POSTAL_CODE)) {
+            contact.setPostalCode(address.getPostalCode());
+        }
+        put(contact);
+    }
+
+    public void remove(Long id) {
+        written(id);
+        documents.computeIfPresent(id, (key, previous) -> {
+            for (String term : previous.terms) {
+                postings.computeIfPresent(term, (t, ids) -> removeId(ids, key));
+            }
+            return null;
+        });
+    }
+
+    private void written(Long id) {
+        if (!ready) {
+            writtenDuringBuild.add(id);
+        }
+    }
+
+    /**
+     * Contacts matching any of the query terms, best first. A contact scores
+     * the sum of the inverse document frequency of the terms it contains, so
+     * matching more terms, or rarer ones, ranks higher. Ties keep id order.
+     */
+    public List<Contact> search(String query, int limit) {
+        String[] terms = tokenize(query);
+        if (terms.length == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        int total = Math.max(documents.size(), 1);
+        List<long[]> lists = new ArrayList<>(terms.length);
+        List<Double> weights = new ArrayList<>(terms.length);
+        for (String term : terms) {
+            long[] ids = postings.get(term);
+            if (ids != null && ids.length > 0) {
+                lists.add(ids);
+                weights.add(Math.log(1.0 + (double) total / ids.length));
+            }
+        }
+        if (lists.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // k-way merge of the sorted posting lists, scoring each id once
+        int[] cursor = new int[lists.size()];
+        TopHits hits = new TopHits(limit);
+        while (true) {
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < lists.size(); i++) {
+                if (cursor[i] < lists.get(i).length && lists.get(i)[cursor[i]] < min) {
+                    min = lists.get(i)[cursor[i]];
+                }
+            }
+            if (min == Long.MAX_VALUE) {
+                break;
+            }
+            double score = 0;
+            for (int i = 0; i < lists.size(); i++) {
+                if (cursor[i] < lists.get(i).length && lists.get(i)[cursor[i]] == min) {
+                    score += weights.get(i);
+                    cursor[i]++;
+                }
+            }
+            hits.offer(min, score);
+        }
+
+        List<Contact> result = new ArrayList<>(hits.size());
+        for (long id : hits.ids()) {
+            IndexedContact doc = documents.get(id);
+            if (doc != null) {
+                result.add(copyOf(doc.contact));
+            }
+        }
+        return result;
+    }
+
+    static String[] tokenize(String... fields) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String field : fields) {
+            if (field == null) {
+                continue;
+            }
+            for (String token : field.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!token.isEmpty()) {
+                    terms.add(token);
+                }
+            }
+        }
+        String[] sorted = terms.toArray(new String[terms.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    static long[] addId(long[] ids, long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos >= 0) {
+            return ids;
+        }
+        int insert = -pos - 1;
+        long[] copy = new long[ids.length + 1];
+        System.arraycopy(ids, 0, copy, 0, insert);
+        copy[insert] = id;
+        System.arraycopy(ids, insert, copy, insert + 1, ids.length - insert);
+        return copy;
+    }
+
+    static long[] removeId(long[] ids, long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null; // drops the term from the map
+        }
+        long[] copy = new long[ids.length - 1];
+        System.arraycopy(ids, 0, copy, 0, pos);
+        System.arraycopy(ids, pos + 1, copy, pos, ids.length - pos - 1);
+        return copy;
+    }
+
+    private static Contact copyOf(Contact source) {
+        Contact copy = new Contact();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setPhone(source.getPhone());
+        copy.setEmail(source.getEmail());
+        copy.setAddress1(source.getAddress1());
+        copy.setAddress2(source.getAddress2());
+        copy.setAddress3(source.getAddress3());
+        copy.setPostalCode(source.getPostalCode());
+        copy.setNote(source.getNote());
+        copy.setVersion(source.getVersion());
+        return copy;
+    }
+
+    private static final class IndexedContact {
+
+        private final Contact contact;
+        
+        private final String[] terms;
+
+        private IndexedContact(Contact contact, String[] terms) {
+            this.contact = contact;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * Bounded min-heap on score keeping the best {@code limit} hits.
+     */
+    private static final class TopHits {
+
+        private final long[] ids;
+        
+        private final double[] scores;
+        
+        private int size = 0;
+
+        private TopHits(int limit) {
+            ids = new long[limit];
+            scores = new double[limit];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void offer(long id, double score) {
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Drains the heap, best score first (lower id first on equal score).
+         */
+        private long[] ids() {
+            long[] sorted = new long[size];
+            for (int i = size - 1; i >= 0; i--) {
+                sorted[i] = ids[0];
+                size--;
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return sorted;
+        }
+
+        // min-heap order: lower score first, and on equal score the higher id
+        // first, so it is evicted before an older contact with the same score
+        private boolean less(int a, int b) {
+            return scores[a] < scores[b] || (scores[a] == scores[b] && ids[a] > ids[b]);
+        }
+
+        private void swap(int a, int b) {
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0 && less(i, (i - 1) / 2)) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int right = left + 1;
+                int smallest = i;
+                if (left < size && less(left, smallest)) {
+                    smallest = left;
+                }
+                if (right < size && less(right, smallest)) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+    }
+}
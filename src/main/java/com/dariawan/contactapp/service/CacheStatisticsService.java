@@ -0,0 +1,103 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.domain.CacheRegionStatistics;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.cache.management.CacheStatisticsMXBean;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Per-region statistics of the second-level cache. Hits, misses and puts
+ * come from Hibernate (with hibernate.generate_statistics on), evictions from
+ * the JCache statistics MXBean of the region.
+ */
+@Service
+public class CacheStatisticsService {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    public List<CacheRegionStatistics> findAll() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<CacheRegionStatistics> regions = new ArrayList<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            org.hibernate.stat.CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(regionName);
+            CacheRegionStatistics stats = new CacheRegionStatistics();
+            stats.setRegion(regionName);
+            stats.setHits(region.getHitCount());
+            stats.setMisses(region.getMissCount());
+            stats.setPuts(region.getPutCount());
+            CacheStatisticsMXBean jcache = jcacheStatistics(regionName);
+            if (jcache != null) {
+                stats.setEvictions(jcache.getCacheEvictions());
+            }
+            long lookups = stats.getHits() + stats.getMisses();
+            stats.setHitPercentage(lookups == 0 ? 0f : 100f * stats.getHits() / lookups);
+            regions.add(stats);
+        }
+        return regions;
+    }
+
+    private CacheStatisticsMXBean jcacheStatistics(String regionName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName pattern = new ObjectName("javax.cache:type=CacheStatistics,Cache=" 
+                    + regionName + ",*");
+            Set<ObjectName> names = server.queryNames(pattern, null);
+            if (names.isEmpty()) {
+                return null;
+            }
+            return JMX.newMXBeanProxy(server, names.iterator().next(), CacheStatisticsMXBean.class);
+        } catch (MalformedObjectNameException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.domain.BatchResult;
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.exception.BadResourceException;
+import com.dariawan.contactapp.repository.ContactRepository;
+import com.dariawan.contactapp.repository.ContactRepositoryCustom.UpsertKey;
+import com.dariawan.contactapp.search.ContactSearchIndex;
+import com.dariawan.contactapp.specification.ContactSpecification;
+import com.dariawan.contactapp.util.NdJsonIterator.MalformedLineException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+/**
+ * Bulk creation and deletion of contacts, in chunks of
+ * {@code contactapp.batch.chunk-size} with one transaction per chunk.
+ * <p>
+ * On create, items are validated one by one and valid ones are inserted so
+ * Hibernate can send them as JDBC batches. A chunk that fails in the database
+ * is rejected as a whole, the other chunks still commit. On delete, each
+ * chunk is a single {@code DELETE ... WHERE id IN (...)}, so a large purge
+ * never holds its locks, or its WAL, in one long transaction. On upsert, each
+ * chunk is a single {@code INSERT ... ON CONFLICT DO UPDATE} matching on
+ * {@code contactapp.upsert.conflict-key} (ID or EMAIL).
+ */
+@Service
+public class ContactBatchService {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private ContactCountService contactCountService;
+
+    @Autowired(required = false)
+    private ContactSearchIndex contactSearchIndex;
+    
+    @Autowired
+    private ContactResponseCache contactResponseCache;
+
+    @Autowired
+    private ContactReadFlights contactReadFlights;
+    
+    @Autowired(required = false)
+    private ContactWriteBehind contactWriteBehind;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${contactapp.batch.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${contactapp.upsert.conflict-key:ID}")
+    private UpsertKey upsertKey;
+
+    /**
+     * @param contacts contacts to create, one that could not be parsed
+     * throws {@link MalformedLineException} and is reported as rejected
+     */
+    public BatchResult saveAll(Iterator<Contact> contacts) {
+        BatchResult result = new BatchResult();
+        List<Contact> chunk = new ArrayList<>(chunkSize);
+        List<Integer> positions = new ArrayList<>(chunkSize);
+        int index = 0;
+        while (contacts.hasNext()) {
+            Contact contact = null;
+            List<String> errors;
+            result.getIds().add(null);
+            try {
+                contact = contacts.next();
+                errors = validate(contact);
+            } catch (MalformedLineException ex) {
+                errors = malformed(ex);
+            }
+            if (errors.isEmpty()) {
+                chunk.add(contact);
+                positions.add(index);
+            } else {
+                result.addError(index, errors);
+            }
+            index++;
+            if (chunk.size() >= chunkSize) {
+                saveChunk(chunk, positions, result);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, positions, result);
+        }
+        result.setReceived(index);
+        return result;
+    }
+
+    /**
+     * Inserts the contact, or updates the one with the same conflict key,
+     * in a single statement.
+     *
+     * @return true if the contact was inserted, false if it was updated
+     */
+    public boolean upsert(Contact contact) throws BadResourceException {
+        List<String> errors = validateUpsert(contact);
+        if (!errors.isEmpty()) {
+            BadResourceException exc = new BadResourceException("Failed to upsert contact");
+            exc.setErrorMessages(errors);
+            throw exc;
+        }
+        flushWriteBehind();
+        boolean inserted = contactRepository.upsertAll(Collections.singletonList(contact), upsertKey)[0];
+        afterUpsert(contact, inserted);
+        return inserted;
+    }
+
+    /**
+     * Upserts in chunks, one statement per chunk. When a chunk holds the same
+     * key twice, the later item wins and the earlier one is reported as
+     * superseded.
+     *
+     * @param contacts contacts to upsert, one that could not be parsed
+     * throws {@link MalformedLineException} and is reported as rejected
+     */
+    public BatchResult upsertAll(Iterator<Contact> contacts) {
+        BatchResult result = new BatchResult();
+        List<Contact> chunk = new ArrayList<>(chunkSize);
+        List<Integer> positions = new ArrayList<>(chunkSize);
+        Map<Object, Integer> keys = new HashMap<>();
+        int index = 0;
+        while (contacts.hasNext()) {
+            Contact contact = null;
+            List<String> errors;
+            result.getIds().add(null);
+            try {
+                contact = contacts.next();
+                errors = validateUpsert(contact);
+            } catch (MalformedLineException ex) {
+                errors = malformed(ex);
+            }
+            Object key = errors.isEmpty() ? upsertKeyOf(contact) : null;
+            if (!errors.isEmpty()) {
+                result.addError(index, errors);
+            } else if (key != null && keys.containsKey(key)) {
+                int previous = keys.get(key);
+                result.addError(positions.get(previous), 
+                        Collections.singletonList("Superseded by item " + index));
+                chunk.set(previous, contact);
+                positions.set(previous, index);
+            } else {
+                if (key != null) {
+                    keys.put(key, chunk.size());
+                }
+                chunk.add(contact);
+                positions.add(index);
+            }
+            index++;
+            if (chunk.size() >= chunkSize) {
+                upsertChunk(chunk, positions, result);
+                keys.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            upsertChunk(chunk, positions, result);
+        }
+        result.setReceived(index);
+        return result;
+    }
+
+    public long deleteAllById(List<Long> ids) {
+        long deleted = 0;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            deleted += deleteChunk(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes the contacts whose name contains {@code name}, walking the
+     * matching ids in id order one chunk at a time.
+     */
+    public long deleteAllByName(String name) {
+        Contact filter = new Contact();
+        filter.setName(name);
+        Specification<Contact> spec = new ContactSpecification(filter);
+
+        long deleted = 0;
+        Long lastId = null;
+        List<Long> chunk;
+        do {
+            chunk = contactRepository.findIds(spec, lastId, chunkSize);
+            if (!chunk.isEmpty()) {
+                deleted += deleteChunk(chunk);
+                lastId = chunk.get(chunk.size() - 1);
+            }
+        } while (chunk.size() == chunkSize);
+        return deleted;
+    }
+
+    private int deleteChunk(List<Long> ids) {
+        if (contactWriteBehind != null) {
+            contactWriteBehind.discard(ids);
+        }
+        int deleted = contactRepository.deleteAllByIdIn(ids);
+        contactCountService.decrement(deleted);
+        contactReadFlights.changed(ids);
+        for (Long id : ids) {
+            contactResponseCache.evict(id);
+            if (contactSearchIndex != null) {
+                contactSearchIndex.remove(id);
+            }
+        }
+        return deleted;
+    }
+
+    private void upsertChunk(List<Contact> chunk, List<Integer> positions, BatchResult result) {
+        try {
+            flushWriteBehind();
+            boolean[] inserted = contactRepository.upsertAll(chunk, upsertKey);
+            for (int i = 0; i < chunk.size(); i++) {
+                result.getIds().set(positions.get(i), chunk.get(i).getId());
+                afterUpsert(chunk.get(i), inserted[i]);
+            }
+            result.setSucceeded(result.getSucceeded() + chunk.size());
+        } catch (DataAccessException | TransactionException ex) {
+            // log exception first, then reject the whole chunk
+            logger.error(ex.getMessage());
+            List<String> errors = Collections.singletonList("Chunk rejected: " 
+                    + ex.getMostSpecificCause().getMessage());
+            for (Integer position : positions) {
+                result.addError(position, errors);
+            }
+        } finally {
+            chunk.clear();
+            positions.clear();
+        }
+    }
+
+    // buffered updates are older than the upserts, so must not overwrite them
+    private void flushWriteBehind() {
+        if (contactWriteBehind != null) {
+            contactWriteBehind.flush();
+        }
+    }
+
+    private void afterUpsert(Contact contact, boolean inserted) {
+        contactReadFlights.changed(Collections.singletonList(contact.getId()));
+        if (inserted) {
+            contactCountService.increment();
+        } else {
+            contactResponseCache.evict(contact.getId());
+        }
+        if (contactSearchIndex != null) {
+            contactSearchIndex.index(contact);
+        }
+    }
+
+    private Object upsertKeyOf(Contact contact) {
+        if (upsertKey == UpsertKey.EMAIL) {
+            return contact.getEmail().toLowerCase(Locale.ROOT);
+        }
+        return contact.getId();
+    }
+
+    private List<String> validateUpsert(Contact contact) {
+        if (contact == null) {
+            return Collections.singletonList("Malformed contact");
+        }
+        List<String> errors = violations(contact);
+        if (upsertKey == UpsertKey.EMAIL && StringUtils.isEmpty(contact.getEmail())) {
+            errors.add("email: must not be empty, contacts are matched by email");
+        }
+        return errors;
+    }
+
+    private static List<String> malformed(MalformedLineException ex) {
+        return Collections.singletonList("Malformed contact, " + ex.getMessage());
+    }
+
+    private List<String> violations(Contact contact) {
+        List<String> errors = new ArrayList<>();
+        Set<ConstraintViolation<Contact>> violations = validator.validate(contact);
+        for (ConstraintViolation<Contact> violation : violations) {
+            errors.add(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        return errors;
+    }
+
+    private List<String> validate(Contact contact) {
+        if (contact == null) {
+            return Collections.singletonList("Malformed contact");
+        }
+        List<String> errors = violations(contact);
+        if (contact.getId() != null) {
+            errors.add(0, "id: must not be set for a new contact");
+        }
+        return errors;
+    }
+
+    private void saveChunk(List<Contact> chunk, List<Integer> positions, BatchResult result) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        try {
+            tx.execute(status -> {
+                contactRepository.saveAll(chunk);
+                entityManager.flush();
+                return null;
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                Contact saved = chunk.get(i);
+                result.getIds().set(positions.get(i), saved.getId());
+                if (contactSearchIndex != null) {
+                    contactSearchIndex.index(saved);
+                }
+            }
+            result.setSucceeded(result.getSucceeded() + chunk.size());
+            contactCountService.increment(chunk.size());
+            // new contacts may show in name searches
+            contactReadFlights.changed(Collections.emptyList());
+        } catch (DataAccessException | TransactionException ex) {
+            // log exception first, then reject the whole chunk
+            logger.error(ex.getMessage());
+            List<String> errors = Collections.singletonList("Chunk rejected: " 
+                    + ex.getMostSpecificCause().getMessage());
+            for (Integer position : positions) {
+                result.addError(position, errors);
+            }
+        } finally {
+            // keep the persistence context (open for the whole request) small
+            entityManager.clear();
+            chunk.clear();
+            positions.clear();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.repository.ContactRepository;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+/**
+ * Serves the number of contacts without running {@code count(*)} per call.
+ * <p>
+ * Modes ({@code contactapp.count.mode}):
+ * <ul>
+ * <li>{@code counter} - in-memory counter kept current by this node's
+ * writes, and reconciled with {@code count(*)} at startup and every
+ * {@code contactapp.count.reconcile-interval}, which brings in the writes of
+ * other nodes. Writes made while {@code count(*)} runs may be counted twice,
+ * until the next reconciliation. Until the first one it answers with the
+ * planner estimate.</li>
+ * <li>{@code estimate} - PostgreSQL {@code pg_class.reltuples}, as fresh as
+ * the last VACUUM/ANALYZE.</li>
+ * <li>{@code exact} - plain {@code count(*)}.</li>
+ * </ul>
+ */
+@Service
+public class ContactCountService {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final String ESTIMATE_SQL
+            = "select reltuples::bigint from pg_class where oid = 'contact'::regclass";
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${contactapp.count.mode:counter}")
+    private String mode;
+
+    // 0 reconciles only at startup, enough when this is the only node
+    @Value("${contactapp.count.reconcile-interval:1m}")
+    private Duration reconcileInterval;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private volatile boolean seeded = false;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "contact-count");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!"counter".equals(mode)) {
+            return;
+        }
+        long interval = reconcileInterval.toMillis();
+        if (interval > 0) {
+            executor.scheduleWithFixedDelay(this::reconcile, 0, interval, TimeUnit.MILLISECONDS);
+        } else {
+            executor.execute(this::reconcile);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void reconcile() {
+        try {
+            // writes counted while count(*) runs are kept, not overwritten
+            long before = counter.get();
+            long stored = contactRepository.count();
+            counter.addAndGet(stored - before);
+            seeded = true;
+        } catch (DataAccessException | TransactionException ex) {
+            // stay on the last count, or the estimate, until the next successful reconciliation
+            logger.error("Cannot reconcile contact counter: " + ex.getMessage());
+        }
+    }
+
+    public long count() {
+        switch (mode) {
+            case "exact":
+                return contactRepository.count();
+            case "estimate":
+                return estimate();
+            default:
+                return seeded ? counter.get() : estimate();
+        }
+    }
+
+    public void increment() {
+        counter.incrementAndGet();
+    }
+
+    public void increment(long delta) {
+        counter.addAndGet(delta);
+    }
+
+    public void decrement(long delta) {
+        counter.addAndGet(-delta);
+    }
+
+    private long estimate() {
+        Long estimate = jdbcTemplate.queryForObject(ESTIMATE_SQL, Long.class);
+        // reltuples is -1 (or 0 on old servers) for a table never analyzed
+        if (estimate == null || estimate < 0) {
+            return contactRepository.count();
+        }
+        return estimate;
+    }
+}
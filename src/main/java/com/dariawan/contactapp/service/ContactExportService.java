@@ -0,0 +1,213 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.exception.BadResourceException;
+import com.dariawan.contactapp.repository.ContactRepository;
+import com.dariawan.contactapp.util.ContactCsv;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Streams every contact from a server-side cursor straight into the response,
+ * detaching each entity once written, so heap use does not grow with the
+ * table.
+ */
+@Service
+public class ContactExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        JSON(MediaType.APPLICATION_JSON_VALUE, "json"),
+        XML(MediaType.APPLICATION_XML_VALUE, "xml"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format of(String format) throws BadResourceException {
+            for (Format f : values()) {
+                if (f.extension.equalsIgnoreCase(format)) {
+                    return f;
+                }
+            }
+            BadResourceException exc = new BadResourceException("Failed to export contacts");
+            exc.addErrorMessage("Unknown export format: " + format);
+            throw exc;
+        }
+    }
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    private XmlMapper xmlMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @PostConstruct
+    public void init() {
+        // same modules and configuration as the XML message converter
+        xmlMapper = objectMapperBuilder.createXmlMapper(true).build();
+    }
+
+    @Transactional(readOnly = true)
+    public long export(Format format, OutputStream out) throws IOException {
+        try (Stream<Contact> contacts = contactRepository.streamAll()) {
+            Iterator<Contact> it = contacts.iterator();
+            switch (format) {
+                case XML:
+                    return writeXml(it, out);
+                case CSV:
+                    return writeCsv(it, out);
+                default:
+                    return writeJson(it, out, format == Format.JSON);
+            }
+        }
+    }
+
+    private long writeJson(Iterator<Contact> contacts, OutputStream out, boolean array) 
+            throws IOException {
+        long count = 0;
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            if (array) {
+                generator.writeStartArray();
+            }
+            while (contacts.hasNext()) {
+                writer.writeValue(generator, detach(contacts.next()));
+                if (!array) {
+                    generator.writeRaw('\n');
+                }
+                count++;
+            }
+            if (array) {
+                generator.writeEndArray();
+            }
+        }
+        return count;
+    }
+
+    private long writeCsv(Iterator<Contact> contacts, OutputStream out) throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        ContactCsv.writeHeader(writer);
+        while (contacts.hasNext()) {
+            ContactCsv.writeContact(writer, detach(contacts.next()));
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    private long writeXml(Iterator<Contact> contacts, OutputStream out) throws IOException {
+        long count = 0;
+        try {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance()
+                    .createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+            writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            writer.writeStartElement("Contacts");
+            ObjectWriter contactWriter = xmlMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            while (contacts.hasNext()) {
+                // a fresh generator per row writes each contact as its own element
+                contactWriter.writeValue(xmlMapper.getFactory().createGenerator(writer), 
+                        detach(contacts.next()));
+                count++;
+            }
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+        return count;
+    }
+
+    private Contact detach(Contact contact) {
+        entityManager.detach(contact);
+        return contact;
+    }
+}
@@ -0,0 +1,362 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.domain.BatchError;
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.domain.ImportJob;
+import com.dariawan.contactapp.exception.BadResourceException;
+import com.dariawan.contactapp.exception.ResourceNotFoundException;
+import com.dariawan.contactapp.search.ContactSearchIndex;
+import com.dariawan.contactapp.util.ContactCsv;
+import com.dariawan.contactapp.util.PhoneNumbers;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bulk import of contacts from CSV through PostgreSQL COPY.
+ * <p>
+ * The upload is spooled to a temporary file and processed in the background:
+ * records are parsed and validated against the {@link Contact} constraints in
+ * one streaming pass, valid ones are sent with {@code COPY ... FROM STDIN}
+ * into a temporary staging table, then merged into {@code contact} with a
+ * single {@code INSERT ... SELECT ... ON CONFLICT (id) DO UPDATE}. Of records
+ * sharing an id the last one wins, records without an id, or with one not
+ * stored yet, get ids from contact_id_seq in blocks of 50, the same pooled-lo
+ * layout Hibernate uses.
+ * Progress is polled through {@link #findById}, finished imports are kept for
+ * {@code contactapp.import.job-retention}.
+ */
+@Service
+public class ContactImportService {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // must match increment_size of Contact.id
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String CREATE_STAGING_SQL = "create temporary table contact_import ("
+            + "line bigint, id bigint, name varchar(255), phone varchar(255), phone_digits varchar(25), "
+            + "email varchar(255), address1 varchar(255), address2 varchar(255), address3 varchar(255), "
+            + "postal_code varchar(255), note varchar(4000)) on commit drop";
+
+    private static final String COPY_SQL = "copy contact_import (line, id, name, phone, phone_digits, "
+            + "email, address1, address2, address3, postal_code, note) from stdin with (format csv)";
+
+    private static final String MERGE_SQL = "with staged as ("
+            + "  select s.*, exists (select 1 from contact c where c.id = s.id) as stored"
+            + "  from (select * from contact_import where id is null"
+            + "    union all (select distinct on (id) * from contact_import where id is not null"
+            + "    order by id, line desc)) s), "
+            + "fresh as ("
+            + "  select line, row_number() over (order by line) - 1 as rn"
+            + "  from staged where not stored), "
+            + "blocks as ("
+            + "  select b, nextval('contact_id_seq') as base"
+            + "  from generate_series(0, (select (count(*) + " + (ID_BLOCK_SIZE - 1) + ") / " 
+            + ID_BLOCK_SIZE + " - 1 from fresh)) b), "
+            + "merged as ("
+            + "  insert into contact (id, name, phone, phone_digits, phone_digits_rev, email,"
+            + "    address1, address2, address3, postal_code, note)"
+            + "  select case when s.stored then s.id else blocks.base + fresh.rn % " + ID_BLOCK_SIZE 
+            + " end, s.name, s.phone,"
+            + "    s.phone_digits, reverse(s.phone_digits), s.email,"
+            + "    s.address1, s.address2, s.address3, s.postal_code, s.note"
+            + "  from staged s"
+            + "  left join fresh on fresh.line = s.line"
+            + "  left join blocks on blocks.b = fresh.rn / " + ID_BLOCK_SIZE
+            + "  on conflict (id) do update set name = excluded.name, phone = excluded.phone,"
+            + "    phone_digits = excluded.phone_digits, phone_digits_rev = excluded.phone_digits_rev,"
+            + "    email = excluded.email, address1 = excluded.address1, address2 = excluded.address2,"
+            + "    address3 = excluded.address3, postal_code = excluded.postal_code, note = excluded.note,"
+            + "    version = contact.version + 1"
+            + "  returning (xmax = 0) as inserted) "
+            + "select count(*) filter (where inserted), count(*) filter (where not inserted) from merged";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ContactCountService contactCountService;
+
+    @Autowired(required = false)
+    private ContactSearchIndex contactSearchIndex;
+    
+    @Autowired
+    private ContactResponseCache contactResponseCache;
+
+    @Autowired
+    private ContactReadFlights contactReadFlights;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired(required = false)
+    private ContactWriteBehind contactWriteBehind;
+
+    @Value("${contactapp.import.max-reported-rejections:1000}")
+    private int maxReportedRejections;
+
+    @Value("${contactapp.import.progress-interval:100000}")
+    private long progressInterval;
+
+    @Value("${contactapp.import.job-retention:1h}")
+    private Duration jobRetention;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "contact-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Spools the CSV to disk and queues it. Imports run one at a time.
+     */
+    public ImportJob submit(InputStream csv) throws IOException {
+        Path file = Files.createTempFile("contact-import-", ".csv");
+        Files.copy(csv, file, StandardCopyOption.REPLACE_EXISTING);
+
+        evictFinishedJobs();
+        ImportJob job = new ImportJob();
+        job.setId(UUID.randomUUID().toString());
+        jobs.put(job.getId(), job);
+        executor.submit(() -> run(job, file));
+        return job;
+    }
+
+    public ImportJob findById(String id) throws ResourceNotFoundException {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            throw new ResourceNotFoundException("Cannot find import with id: " + id);
+        }
+        return job;
+    }
+
+    private void evictFinishedJobs() {
+        long finishedBefore = System.currentTimeMillis() - jobRetention.toMillis();
+        jobs.values().removeIf(job -> job.getFinishedAt() != null 
+                && job.getFinishedAt().getTime() < finishedBefore);
+    }
+
+    private void run(ImportJob job, Path file) {
+        job.setStartedAt(new Date());
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                job.setState(ImportJob.State.STAGING);
+                try (Statement st = conn.createStatement()) {
+                    st.execute(CREATE_STAGING_SQL);
+                }
+                stage(job, reader, conn.unwrap(PGConnection.class));
+
+                job.setState(ImportJob.State.MERGING);
+                if (contactWriteBehind != null) {
+                    // buffered updates are older than the import
+                    contactWriteBehind.flush();
+                }
+                try (Statement st = conn.createStatement();
+                        ResultSet rs = st.executeQuery(MERGE_SQL)) {
+                    rs.next();
+                    job.setContactsInserted(rs.getLong(1));
+                    job.setContactsUpdated(rs.getLong(2));
+                }
+                conn.commit();
+            } catch (SQLException | IOException | BadResourceException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            }
+
+            contactCountService.increment(job.getContactsInserted());
+            // updated rows may sit in the second-level cache, the index has none of them
+            entityManagerFactory.getCache().evict(Contact.class);
+            contactResponseCache.evictAll();
+            contactReadFlights.changedAll();
+            if (contactSearchIndex != null) {
+                contactSearchIndex.build();
+            }
+            job.setState(ImportJob.State.COMPLETED);
+            logger.info("Import " + job.getId() + " completed: " + job.getContactsInserted() 
+                    + " inserted, " + job.getContactsUpdated() + " updated, " 
+                    + job.getRecordsRejected() + " rejected");
+        } catch (SQLException | IOException | BadResourceException | RuntimeException ex) {
+            logger.error("Import " + job.getId() + " failed: " + ex.getMessage());
+            job.setMessage(ex.getMessage());
+            job.setState(ImportJob.State.FAILED);
+        } finally {
+            job.setFinishedAt(new Date());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                logger.error(ex.getMessage());
+            }
+        }
+    }
+
+    private void stage(ImportJob job, BufferedReader reader, PGConnection pgConnection) 
+            throws SQLException, IOException, BadResourceException {
+        String[] header = ContactCsv.readRow(reader);
+        if (header == null) {
+            BadResourceException exc = new BadResourceException("Failed to import contacts");
+            exc.addErrorMessage("CSV is empty");
+            throw exc;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            if (header[i] != null) {
+                columns.put(header[i].trim().toLowerCase(Locale.ROOT), i);
+            }
+        }
+        if (!columns.containsKey("name")) {
+            BadResourceException exc = new BadResourceException("Failed to import contacts");
+            exc.addErrorMessage("CSV header has no name column");
+            throw exc;
+        }
+
+        try (Writer copy = new BufferedWriter(new OutputStreamWriter(
+                new PGCopyOutputStream(pgConnection, COPY_SQL, 1 << 16), StandardCharsets.UTF_8), 1 << 16)) {
+            String[] record;
+            long line = 0;
+            while ((record = ContactCsv.readRow(reader)) != null) {
+                line++;
+                job.setRecordsRead(line);
+                if (line % progressInterval == 0) {
+                    logger.info("Import " + job.getId() + ": " + line + " records read");
+                }
+
+                List<String> errors = new ArrayList<>();
+                Contact contact = toContact(record, columns, errors);
+                if (contact != null) {
+                    Set<ConstraintViolation<Contact>> violations = validator.validate(contact);
+                    for (ConstraintViolation<Contact> violation : violations) {
+                        errors.add(violation.getPropertyPath() + ": " + violation.getMessage());
+                    }
+                }
+                if (!errors.isEmpty()) {
+                    job.setRecordsRejected(job.getRecordsRejected() + 1);
+                    if (job.getRejections().size() < maxReportedRejections) {
+                        job.getRejections().add(new BatchError(line, errors));
+                    }
+                    continue;
+                }
+
+                ContactCsv.writeRow(copy, new String[]{
+                    Long.toString(line),
+                    contact.getId() == null ? null : contact.getId().toString(),
+                    contact.getName(), contact.getPhone(), PhoneNumbers.digits(contact.getPhone()),
+                    contact.getEmail(), contact.getAddress1(), contact.getAddress2(),
+                    contact.getAddress3(), contact.getPostalCode(), contact.getNote()});
+                job.setRecordsStaged(job.getRecordsStaged() + 1);
+            }
+        }
+    }
+
+    private Contact toContact(String[] record, Map<String, Integer> columns, List<String> errors) {
+        Contact contact = new Contact();
+        String id = value(record, columns, "id");
+        if (id != null) {
+            try {
+                contact.setId(Long.valueOf(id.trim()));
+            } catch (NumberFormatException ex) {
+                errors.add("id: not a number");
+                return null;
+            }
+        }
+        contact.setName(value(record, columns, "name"));
+        contact.setPhone(value(record, columns, "phone"));
+        contact.setEmail(value(record, columns, "email"));
+        contact.setAddress1(value(record, columns, "address1"));
+        contact.setAddress2(value(record, columns, "address2"));
+        contact.setAddress3(value(record, columns, "address3"));
+        contact.setPostalCode(value(record, columns, "postal_code"));
+        contact.setNote(value(record, columns, "note"));
+        return contact;
+    }
+
+    private static String value(String[] record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index == null || index >= record.length ? null : record[index];
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.jdbc.RoutingContext;
+import com.dariawan.contactapp.util.SingleFlight;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets concurrent identical {@link ContactService} reads (contact by id, name
+ * search page) share one query, with {@code contactapp.single-flight.enabled}.
+ * Keys include whether the caller may read a replica, so read-your-writes
+ * callers never share a replica's answer. Followers get detached copies, not
+ * the entities of the leader's session.
+ * <p>
+ * Every write calls {@link #changed} once committed: loads of the contact,
+ * and name searches, started before it are no longer joined, so a client
+ * never reads back less than what it has just written.
+ */
+@Component
+public class ContactReadFlights {
+
+    @Value("${contactapp.single-flight.enabled:true}")
+    private boolean enabled;
+
+    @Value("${contactapp.single-flight.max-wait:2s}")
+    private Duration maxWait;
+
+    private SingleFlight<List<Object>, Contact> contactsById;
+
+    private SingleFlight<List<Object>, List<Contact>> contactsByName;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            contactsById = new SingleFlight<>(maxWait, ContactReadFlights::copyOf);
+            contactsByName = new SingleFlight<>(maxWait, contacts -> contacts.stream()
+                    .map(ContactReadFlights::copyOf).collect(Collectors.toCollection(ArrayList::new)));
+        }
+    }
+
+    public <E extends Exception> Contact findById(Long id, SingleFlight.Loader<Contact, E> loader) 
+            throws E {
+        return load(contactsById, Arrays.asList(id, RoutingContext.useReplica()), loader);
+    }
+
+    public <E extends Exception> List<Contact> findAllByName(String name, int pageNumber, int rowPerPage,
+            SingleFlight.Loader<List<Contact>, E> loader) throws E {
+        return load(contactsByName, Arrays.asList(name, pageNumber, rowPerPage, RoutingContext.useReplica()),
+                loader);
+    }
+
+    /**
+     * Contacts inserted, updated or deleted; any of them may change any name
+     * search page.
+     */
+    public void changed(Collection<Long> ids) {
+        if (enabled) {
+            for (Long id : ids) {
+                contactsById.forget(Arrays.asList(id, true));
+                contactsById.forget(Arrays.asList(id, false));
+            }
+            contactsByName.forgetAll();
+        }
+    }
+
+    public void changedAll() {
+        if (enabled) {
+            contactsById.forgetAll();
+            contactsByName.forgetAll();
+        }
+    }
+
+    private static <K, V, E extends Exception> V load(SingleFlight<K, V> flight, K key, 
+            SingleFlight.Loader<V, E> loader) throws E {
+        return flight != null ? flight.load(key, loader) : loader.load();
+    }
+
+    private static Contact copyOf(Contact contact) {
+        Contact copy = new Contact();
+        copy.setId(contact.getId());
+        copy.setName(contact.getName());
+        copy.setPhone(contact.getPhone());
+        copy.setEmail(contact.getEmail());
+        copy.setAddress1(contact.getAddress1());
+        copy.setAddress2(contact.getAddress2());
+        copy.setAddress3(contact.getAddress3());
+        copy.setPostalCode(contact.getPostalCode());
+        copy.setNote(contact.getNote());
+        copy.setVersion(contact.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.config.CacheConfig;
+import com.dariawan.contactapp.domain.Contact;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.PostConstruct;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Contacts already serialized to JSON and XML, so repeated reads skip Jackson.
+ * <p>
+ * Fragments are kept per contact id together with the version they were
+ * written from; a fragment is only served for a contact at that same version,
+ * so a write made elsewhere is never answered with stale bytes. Writes through
+ * this application also evict the contact straight away. Lists are assembled
+ * by joining the fragments of their contacts, byte for byte what the message
+ * converters would have written for the list.
+ */
+@Service
+public class ContactResponseCache {
+
+    private static final byte[] JSON_START = {'['};
+    private static final byte[] JSON_SEPARATOR = {','};
+    private static final byte[] JSON_END = {']'};
+
+    // root element Jackson writes for the ArrayList pages have always been,
+    // whatever List implementation is passed in
+    private static final byte[] XML_START = "<ArrayList>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] XML_END = "</ArrayList>".getBytes(StandardCharsets.UTF_8);
+
+    // element name Jackson gives each item of a list
+    private static final String XML_ITEM = "item";
+
+    @Autowired
+    private CacheManager jcacheCacheManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    private Cache<Long, Fragments> cache;
+
+    private ObjectWriter jsonWriter;
+
+    private ObjectWriter xmlItemWriter;
+
+    @PostConstruct
+    public void init() {
+        cache = jcacheCacheManager.getCache(CacheConfig.CONTACT_RESPONSE_REGION, Long.class, Fragments.class);
+        jsonWriter = objectMapper.writerFor(Contact.class);
+        // same configuration as the XML message converter
+        XmlMapper xmlMapper = objectMapperBuilder.createXmlMapper(true).build();
+        xmlItemWriter = xmlMapper.writerFor(Contact.class).withRootName(XML_ITEM);
+    }
+
+    public byte[] json(Contact contact) {
+        return fragments(contact, false).json;
+    }
+
+    public byte[] jsonArray(List<Contact> contacts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * (contacts.size() + 1));
+        out.write(JSON_START, 0, JSON_START.length);
+        for (int i = 0; i < contacts.size(); i++) {
+            if (i > 0) {
+                out.write(JSON_SEPARATOR, 0, JSON_SEPARATOR.length);
+            }
+            byte[] fragment = fragments(contacts.get(i), false).json;
+            out.write(fragment, 0, fragment.length);
+        }
+        out.write(JSON_END, 0, JSON_END.length);
+        return out.toByteArray();
+    }
+
+    public byte[] xmlList(List<Contact> contacts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512 * (contacts.size() + 1));
+        out.write(XML_START, 0, XML_START.length);
+        for (Contact contact : contacts) {
+            byte[] fragment = fragments(contact, true).xmlItem;
+            out.write(fragment, 0, fragment.length);
+        }
+        out.write(XML_END, 0, XML_END.length);
+        return out.toByteArray();
+    }
+
+    public void evict(Long id) {
+        cache.remove(id);
+    }
+
+    public void evictAll() {
+        cache.removeAll();
+    }
+
+    private Fragments fragments(Contact contact, boolean xml) {
+        Fragments cached = cache.get(contact.getId());
+        if (cached == null || !Objects.equals(cached.version, contact.getVersion())) {
+            cached = new Fragments(contact.getVersion(), null, null);
+        }
+        if (xml ? cached.xmlItem != null : cached.json != null) {
+            return cached;
+        }
+        Fragments fragments = xml
+                ? new Fragments(cached.version, cached.json, write(xmlItemWriter, contact))
+                : new Fragments(cached.version, write(jsonWriter, contact), cached.xmlItem);
+        cache.put(contact.getId(), fragments);
+        return fragments;
+    }
+
+    private byte[] write(ObjectWriter writer, Contact contact) {
+        try {
+            return writer.writeValueAsBytes(contact);
+        } catch (JsonProcessingException ex) {
+            throw new HttpMessageNotWritableException("Could not write contact: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Serialized forms of one version of a contact; either may still be
+     * missing. Immutable, a new instance replaces it in the cache.
+     */
+    public static final class Fragments {
+
+        private final Long version;
+        private final byte[] json;
+        private final byte[] xmlItem;
+
+        private Fragments(Long version, byte[] json, byte[] xmlItem) {
+            this.version = version;
+            this.json = json;
+            this.xmlItem = xmlItem;
+        }
+    }
+}
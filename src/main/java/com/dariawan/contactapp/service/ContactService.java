@@ -42,13 +42,23 @@ import com.dariawan.contactapp.domain.Address;
 import com.dariawan.contactapp.domain.Contact;
 import com.dariawan.contactapp.exception.BadResourceException;
 import com.dariawan.contactapp.exception.ResourceAlreadyExistsException;
+import com.dariawan.contactapp.exception.ResourceConflictException;
 import com.dariawan.contactapp.exception.ResourceNotFoundException;
+import com.dariawan.contactapp.jdbc.ReadOnly;
 import com.dariawan.contactapp.repository.ContactRepository;
+import com.dariawan.contactapp.search.ContactSearchIndex;
 import com.dariawan.contactapp.specification.ContactSpecification;
+import com.dariawan.contactapp.util.PhoneNumbers;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -56,35 +66,222 @@ import org.springframework.util.StringUtils;
 @Service
 public class ContactService {
     
+    private static final List<String> SELECTABLE_FIELDS = Arrays.asList("id", "name", "phone", 
+            "email", "address1", "address2", "address3", "postalCode", "note", "version");
+    
     @Autowired
     private ContactRepository contactRepository;
     
+    @Autowired
+    private ContactCountService contactCountService;
+    
+    @Autowired(required = false)
+    private ContactSearchIndex contactSearchIndex;
+    
+    @Autowired
+    private ContactResponseCache contactResponseCache;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired(required = false)
+    private ContactWriteBehind contactWriteBehind;
+    
+    @Autowired
+    private ContactReadFlights contactReadFlights;
+    
     private boolean existsById(Long id) {
         return contactRepository.existsById(id);
     }
     
+    @ReadOnly
     public Contact findById(Long id) throws ResourceNotFoundException {
-        Contact contact = contactRepository.findById(id).orElse(null);
-        if (contact==null) {
+        Contact contact = contactReadFlights.findById(id, () -> {
+            Contact found = contactRepository.findById(id).orElse(null);
+            if (found==null) {
+                throw new ResourceNotFoundException("Cannot find Contact with id: " + id);
+            }
+            else return found;
+        });
+        return contactWriteBehind != null ? contactWriteBehind.overlay(contact) : contact;
+    }
+    
+    /**
+     * Current version of the contact, enough to answer a conditional request:
+     * taken from the second-level cache when the contact is there, otherwise
+     * the only column selected.
+     */
+    @ReadOnly
+    public Long findVersionById(Long id) throws ResourceNotFoundException {
+        if (entityManagerFactory.getCache().contains(Contact.class, id)) {
+            return findById(id).getVersion();
+        }
+        Long version = contactRepository.findVersionById(id).orElse(null);
+        if (version == null) {
             throw new ResourceNotFoundException("Cannot find Contact with id: " + id);
         }
-        else return contact;
+        return contactWriteBehind != null 
+                ? version + contactWriteBehind.pendingChanges(id, version) : version;
     }
     
+    @ReadOnly
     public List<Contact> findAll(int pageNumber, int rowPerPage) {
-        List<Contact> contacts = new ArrayList<>();
-        contactRepository.findAll(PageRequest.of(pageNumber - 1, rowPerPage)).forEach(contacts::add);
-        return contacts;
+        return pending(contentOf(contactRepository.findAllBy(PageRequest.of(pageNumber - 1, rowPerPage))));
     }
     
+    @ReadOnly
     public List<Contact> findAllByName(String name, int pageNumber, int rowPerPage) {
+        return pending(contactReadFlights.findAllByName(name, pageNumber, rowPerPage, 
+                () -> contentOf(contactRepository.findSlice(nameSpec(name), 
+                        PageRequest.of(pageNumber - 1, rowPerPage)))));
+    }
+    
+    @ReadOnly
+    public List<Contact> findAllByPhone(String phone, String match, int pageNumber, int rowPerPage) 
+            throws BadResourceException {
+        return pending(contentOf(contactRepository.findSlice(phoneSpec(phone, match), 
+                PageRequest.of(pageNumber - 1, rowPerPage, Sort.by("id")))));
+    }
+    
+    @ReadOnly
+    public List<Contact> findAllAfter(Long afterId, int rowPerPage) {
+        return pending(contactRepository.findByIdGreaterThanOrderByIdAsc(
+                afterId == null ? 0L : afterId, PageRequest.of(0, rowPerPage)));
+    }
+    
+    @ReadOnly
+    public List<Contact> findAllByNameAfter(String name, Long afterId, int rowPerPage) {
+        return pending(contactRepository.findByNameContainingAndIdGreaterThanOrderByIdAsc(
+                name, afterId == null ? 0L : afterId, PageRequest.of(0, rowPerPage)));
+    }
+    
+    /*
+     * Sparse fieldsets: the same lookups as above, selecting only the given
+     * columns (id is always included) instead of whole entities.
+     */
+    
+    @ReadOnly
+    public Map<String, Object> findById(Long id, List<String> fields) 
+            throws BadResourceException, ResourceNotFoundException {
+        Specification<Contact> byId = (root, cq, cb) -> cb.equal(root.get("id"), id);
+        List<Map<String, Object>> contacts = contactRepository.findFields(byId, 
+                validateFields(fields), PageRequest.of(0, 1));
+        if (contacts.isEmpty()) {
+            throw new ResourceNotFoundException("Cannot find Contact with id: " + id);
+        }
+        return pendingFields(contacts).get(0);
+    }
+    
+    @ReadOnly
+    public List<Map<String, Object>> findAll(List<String> fields, int pageNumber, int rowPerPage) 
+            throws BadResourceException {
+        return pendingFields(contactRepository.findFields(null, validateFields(fields), 
+                PageRequest.of(pageNumber - 1, rowPerPage)));
+    }
+    
+    @ReadOnly
+    public List<Map<String, Object>> findAllByName(String name, List<String> fields, 
+            int pageNumber, int rowPerPage) throws BadResourceException {
+        return pendingFields(contactRepository.findFields(nameSpec(name), validateFields(fields), 
+                PageRequest.of(pageNumber - 1, rowPerPage)));
+    }
+    
+    @ReadOnly
+    public List<Map<String, Object>> findAllByPhone(String phone, String match, List<String> fields, 
+            int pageNumber, int rowPerPage) throws BadResourceException {
+        return pendingFields(contactRepository.findFields(phoneSpec(phone, match), validateFields(fields), 
+                PageRequest.of(pageNumber - 1, rowPerPage, Sort.by("id"))));
+    }
+    
+    @ReadOnly
+    public List<Map<String, Object>> findAllAfter(Long afterId, String name, List<String> fields, 
+            int rowPerPage) throws BadResourceException {
+        long after = afterId == null ? 0L : afterId;
+        Specification<Contact> spec = (root, cq, cb) -> cb.greaterThan(root.<Long>get("id"), after);
+        if (!StringUtils.isEmpty(name)) {
+            spec = spec.and(nameSpec(name));
+        }
+        return pendingFields(contactRepository.findFields(spec, validateFields(fields), 
+                PageRequest.of(0, rowPerPage, Sort.by("id"))));
+    }
+    
+    // Slice content is an unmodifiable wrapper, which would also name the
+    // root element of XML responses; pages are plain ArrayLists
+    private static List<Contact> contentOf(Slice<Contact> slice) {
+        return new ArrayList<>(slice.getContent());
+    }
+    
+    // with changes still in the write-behind buffer applied
+    private List<Contact> pending(List<Contact> contacts) {
+        return contactWriteBehind != null ? contactWriteBehind.overlay(contacts) : contacts;
+    }
+    
+    private List<Map<String, Object>> pendingFields(List<Map<String, Object>> contacts) {
+        return contactWriteBehind != null ? contactWriteBehind.overlayFields(contacts) : contacts;
+    }
+    
+    private List<String> validateFields(List<String> fields) throws BadResourceException {
+        List<String> selected = new ArrayList<>();
+        selected.add("id");
+        for (String field : fields) {
+            String name = field.trim();
+            if (!SELECTABLE_FIELDS.contains(name)) {
+                BadResourceException exc = new BadResourceException("Failed to select contact fields");
+                exc.addErrorMessage("Unknown field: " + field);
+                throw exc;
+            }
+            if (!selected.contains(name)) {
+                selected.add(name);
+            }
+        }
+        return selected;
+    }
+    
+    private Specification<Contact> nameSpec(String name) {
         Contact filter = new Contact();
         filter.setName(name);
-        Specification<Contact> spec = new ContactSpecification(filter);
+        return new ContactSpecification(filter);
+    }
+    
+    private Specification<Contact> phoneSpec(String phone, String match) throws BadResourceException {
+        String digits = PhoneNumbers.digits(phone);
+        if (digits == null) {
+            BadResourceException exc = new BadResourceException("Failed to search contact by phone");
+            exc.addErrorMessage("Phone contains no digits: " + phone);
+            throw exc;
+        }
         
-        List<Contact> contacts = new ArrayList<>();
-        contactRepository.findAll(spec, PageRequest.of(pageNumber - 1, rowPerPage)).forEach(contacts::add);
-        return contacts;
+        // prefix matches are written as ranges so they stay index range scans
+        // under generic (server-prepared) plans too
+        switch (match == null ? "suffix" : match.toLowerCase()) {
+            case "exact":
+                return (root, cq, cb) -> cb.equal(root.get("phoneDigits"), digits);
+            case "prefix":
+                return (root, cq, cb) -> cb.and(
+                        cb.greaterThanOrEqualTo(root.get("phoneDigits"), digits),
+                        cb.lessThan(root.get("phoneDigits"), PhoneNumbers.upperBound(digits)));
+            case "suffix":
+                String reversed = PhoneNumbers.reverse(digits);
+                return (root, cq, cb) -> cb.and(
+                        cb.greaterThanOrEqualTo(root.get("phoneDigitsReversed"), reversed),
+                        cb.lessThan(root.get("phoneDigitsReversed"), PhoneNumbers.upperBound(reversed)));
+            default:
+                BadResourceException exc = new BadResourceException("Failed to search contact by phone");
+                exc.addErrorMessage("Unknown phone match: " + match);
+                throw exc;
+        }
+    }
+    
+    public boolean isSearchEnabled() {
+        return contactSearchIndex != null;
+    }
+    
+    public boolean isSearchReady() {
+        return contactSearchIndex != null && contactSearchIndex.isReady();
+    }
+    
+    public List<Contact> search(String query, int limit) {
+        return contactSearchIndex.search(query, limit);
     }
     
     public Contact save(Contact contact) throws BadResourceException, ResourceAlreadyExistsException {
@@ -93,7 +290,17 @@ public class ContactService {
                 throw new ResourceAlreadyExistsException("Contact with id: " + contact.getId() +
                         " already exists");
             }
-            return contactRepository.save(contact);
+            // ids come from the sequence, and a contact with id or version
+            // would be merged rather than persisted
+            contact.setId(null);
+            contact.setVersion(null);
+            Contact saved = contactRepository.save(contact);
+            contactCountService.increment();
+            contactReadFlights.changed(Collections.singletonList(saved.getId()));
+            if (contactSearchIndex != null) {
+                contactSearchIndex.index(saved);
+            }
+            return saved;
         }
         else {
             BadResourceException exc = new BadResourceException("Failed to save contact");
@@ -102,13 +309,42 @@ public class ContactService {
         }
     }
     
+    /**
+     * Updates the contact with a single statement. If the contact carries a
+     * version, the update only applies while the stored version still matches.
+     * With write-behind, an update without version is buffered instead. Either
+     * way the contact gets the new version.
+     */
     public void update(Contact contact) 
-            throws BadResourceException, ResourceNotFoundException {
+            throws BadResourceException, ResourceNotFoundException, ResourceConflictException {
         if (!StringUtils.isEmpty(contact.getName())) {
-            if (!existsById(contact.getId())) {
-                throw new ResourceNotFoundException("Cannot find Contact with id: " + contact.getId());
+            Long expectedVersion = contact.getVersion();
+            if (contactWriteBehind != null && expectedVersion == null) {
+                if (!contactWriteBehind.update(contact)) {
+                    throw new ResourceNotFoundException("Cannot find Contact with id: " + contact.getId());
+                }
+                // stored version plus the buffered changes
+                contact.setVersion(findVersionById(contact.getId()));
+            } else {
+                if (contactWriteBehind != null) {
+                    // the stored version must count the buffered changes
+                    contactWriteBehind.flush();
+                }
+                if (contactRepository.updateIfVersion(contact, expectedVersion) == 0) {
+                    // only the failure path pays for telling 404 from 409
+                    if (!existsById(contact.getId())) {
+                        throw new ResourceNotFoundException("Cannot find Contact with id: " 
+                                + contact.getId());
+                    }
+                    throw new ResourceConflictException("Contact with id: " + contact.getId() 
+                            + " is no longer at version " + expectedVersion);
+                }
+            }
+            contactResponseCache.evict(contact.getId());
+            contactReadFlights.changed(Collections.singletonList(contact.getId()));
+            if (contactSearchIndex != null) {
+                contactSearchIndex.index(contact);
             }
-            contactRepository.save(contact);
         }
         else {
             BadResourceException exc = new BadResourceException("Failed to save contact");
@@ -117,26 +353,51 @@ public class ContactService {
         }
     }
     
+    /**
+     * Sets the address fields present in {@code address}, leaving the others
+     * as they are, with a single update and without loading the contact, or
+     * buffered with write-behind. An address without any field is refused,
+     * rather than bumping the version for no change.
+     */
     public void updateAddress(Long id, Address address) 
-            throws ResourceNotFoundException {
-        Contact contact = findById(id);
-        contact.setAddress1(address.getAddress1());
-        contact.setAddress2(address.getAddress2());
-        contact.setAddress3(address.getAddress3());
-        contact.setPostalCode(address.getPostalCode());
-        contactRepository.save(contact);        
+            throws BadResourceException, ResourceNotFoundException {
+        if (!address.hasPresentFields()) {
+            BadResourceException exc = new BadResourceException("Failed to update contact address");
+            exc.addErrorMessage("No address field to update");
+            throw exc;
+        }
+        boolean updated = contactWriteBehind != null 
+                ? contactWriteBehind.updateAddress(id, address)
+                : contactRepository.updateAddress(id, address) > 0;
+        if (!updated) {
+            throw new ResourceNotFoundException("Cannot find Contact with id: " + id);
+        }
+        contactResponseCache.evict(id);
+        contactReadFlights.changed(Collections.singletonList(id));
+        if (contactSearchIndex != null) {
+            contactSearchIndex.indexAddress(id, address);
+        }
     }
     
     public void deleteById(Long id) throws ResourceNotFoundException {
-        if (!existsById(id)) { 
+        if (contactWriteBehind != null) {
+            contactWriteBehind.discard(Collections.singletonList(id));
+        }
+        if (contactRepository.deleteAllByIdIn(Collections.singletonList(id)) == 0) { 
             throw new ResourceNotFoundException("Cannot find contact with id: " + id);
         }
         else {
-            contactRepository.deleteById(id);
+            contactCountService.decrement(1);
+            contactResponseCache.evict(id);
+            contactReadFlights.changed(Collections.singletonList(id));
+            if (contactSearchIndex != null) {
+                contactSearchIndex.remove(id);
+            }
         }
     }
     
+    @ReadOnly
     public Long count() {
-        return contactRepository.count();
+        return contactCountService.count();
     }
 }
@@ -0,0 +1,617 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.domain.Address;
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.repository.ContactRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write-behind for {@code ContactService.update} and {@code updateAddress},
+ * enabled with {@code contactapp.write-behind.enabled=true}. Changes are
+ * buffered per contact id in a {@link ConcurrentHashMap}, where a change to a
+ * contact already buffered is merged into it: a full update replaces what was
+ * there, address fields are laid over it. The buffer is written in one
+ * transaction of two statements, every {@code flush-interval} or as soon as
+ * {@code batch-size} contacts are buffered, each contact's version advancing
+ * by the number of changes merged into it.
+ * <p>
+ * Reads see buffered changes through {@link #overlay(Contact)}. Conditional
+ * updates, deletes and bulk writes flush or discard the buffer first, so
+ * writes apply in order. With durability {@link Durability#BUFFERED} a change
+ * is acknowledged once buffered, and lost if the process dies before the
+ * flush; {@link Durability#FLUSHED} acknowledges after the flush commits.
+ */
+@Service
+@ConditionalOnProperty(name = "contactapp.write-behind.enabled", havingValue = "true")
+public class ContactWriteBehind {
+
+    public enum Durability {
+        BUFFERED, FLUSHED
+    }
+
+    public static final String METRIC_PREFIX = "contactapp.write-behind";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private ContactResponseCache contactResponseCache;
+
+    @Autowired
+    private ContactReadFlights contactReadFlights;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${contactapp.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${contactapp.write-behind.flush-interval:200ms}")
+    private Duration flushInterval;
+
+    @Value("${contactapp.write-behind.durability:BUFFERED}")
+    private Durability durability;
+
+    // how long a FLUSHED update waits for its flush
+    @Value("${contactapp.write-behind.flush-timeout:10s}")
+    private Duration flushTimeout;
+
+    private final ConcurrentHashMap<Long, Change> pending = new ConcurrentHashMap<>();
+
+    // taken from pending and being written, still visible to reads
+    private final ConcurrentHashMap<Long, Change> flushing = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "contact-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Counter buffered;
+    private Counter coalesced;
+    private Counter lost;
+    private Counter failed;
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    public void init() {
+        buffered = Counter.builder(METRIC_PREFIX + ".changes").tag("result", "buffered")
+                .description("Changes buffered for a contact with none pending").register(meterRegistry);
+        coalesced = Counter.builder(METRIC_PREFIX + ".changes").tag("result", "coalesced")
+                .description("Changes merged into one pending for the same contact").register(meterRegistry);
+        lost = Counter.builder(METRIC_PREFIX + ".lost")
+                .description("Flushed contacts that had been deleted meanwhile").register(meterRegistry);
+        failed = Counter.builder(METRIC_PREFIX + ".failed")
+                .description("Contacts whose flush failed").register(meterRegistry);
+        batchSizes = DistributionSummary.builder(METRIC_PREFIX + ".batch.size")
+                .description("Contacts written per flush").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".pending", pending, Map::size)
+                .description("Contacts with buffered changes").register(meterRegistry);
+
+        long interval = flushInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::flushPending, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Write-behind flushes every " + interval + " ms or " + batchSize + " contacts, " 
+                + durability);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // drain on the flushing thread while it still takes work
+        try {
+            flush();
+        } catch (IllegalStateException ex) {
+            // log exception first, then write what is left below
+            logger.error("Write-behind drain failed: " + ex.getMessage(), ex);
+        }
+        executor.shutdown();
+        executor.awaitTermination(flushTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        flushPending();
+    }
+
+    /**
+     * Buffers a full update of the contact (all fields, whatever its version).
+     *
+     * @return false if the contact does not exist
+     */
+    public boolean update(Contact contact) {
+        return buffer(contact.getId(), new Change(copyOf(contact), null));
+    }
+
+    /**
+     * Buffers setting the address fields present in {@code address}.
+     *
+     * @return false if the contact does not exist
+     */
+    public boolean updateAddress(Long id, Address address) {
+        return buffer(id, new Change(null, copyOf(address)));
+    }
+
+    private boolean buffer(Long id, Change change) {
+        if (!pending.containsKey(id) && !flushing.containsKey(id) 
+                && !entityManagerFactory.getCache().contains(Contact.class, id)
+                && !contactRepository.existsById(id)) {
+            return false;
+        }
+        // the change we are part of, which the flush will complete
+        Change merged = pending.merge(id, change, Change::then);
+        (merged == change ? buffered : coalesced).increment();
+        contactResponseCache.evict(id);
+        if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            executor.execute(this::flushPending);
+        }
+        return durability == Durability.BUFFERED || await(merged.written);
+    }
+
+    private boolean await(CompletableFuture<Boolean> written) {
+        try {
+            return written.get(flushTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Buffered change could not be written", ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new IllegalStateException("Buffered change not written within " + flushTimeout);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the buffered change", ex);
+        }
+    }
+
+    /**
+     * Writes everything buffered so far before returning, on the flushing
+     * thread so flushes stay in order.
+     */
+    public void flush() {
+        try {
+            executor.submit(this::flushPending).get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Flush failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the flush", ex);
+        }
+    }
+
+    /**
+     * Drops the changes buffered for contacts about to be deleted.
+     */
+    public void discard(Collection<Long> ids) {
+        for (Long id : ids) {
+            Change change = pending.remove(id);
+            if (change != null) {
+                change.written.complete(false);
+            }
+        }
+    }
+
+    /**
+     * The contact with its buffered changes applied, as a copy, or the
+     * contact itself when it has none.
+     */
+    public Contact overlay(Contact contact) {
+        if (contact == null || (pending.isEmpty() && flushing.isEmpty())) {
+            return contact;
+        }
+        List<Change> changes = changesOf(contact.getId(), contact.getVersion());
+        if (changes.isEmpty()) {
+            return contact;
+        }
+        Contact view = contact;
+        int count = 0;
+        for (Change change : changes) {
+            view = change.applyTo(view);
+            count += change.count;
+        }
+        view.setVersion(contact.getVersion() == null ? null : contact.getVersion() + count);
+        return view;
+    }
+
+    public List<Contact> overlay(List<Contact> contacts) {
+        if (pending.isEmpty() && flushing.isEmpty()) {
+            return contacts;
+        }
+        List<Contact> views = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            views.add(overlay(contact));
+        }
+        return views;
+    }
+
+    /**
+     * Sparse fieldset variant of {@link #overlay(Contact)}: the selected
+     * fields (id is always one) are updated in place.
+     */
+    public Map<String, Object> overlayFields(Map<String, Object> fields) {
+        if (pending.isEmpty() && flushing.isEmpty()) {
+            return fields;
+        }
+        Long id = ((Number) fields.get("id")).longValue();
+        Number version = (Number) fields.get("version");
+        List<Change> changes = changesOf(id, version == null ? null : version.longValue());
+        if (changes.isEmpty()) {
+            return fields;
+        }
+        Contact view = new Contact();
+        view.setId(id);
+        Map<String, Object> views = new LinkedHashMap<>(fields);
+        int count = 0;
+        for (Change change : changes) {
+            view = change.applyTo(view);
+            count += change.count;
+            for (String field : fields.keySet()) {
+                if (change.sets(field)) {
+                    views.put(field, valueOf(view, field));
+                }
+            }
+        }
+        if (version != null) {
+            views.put("version", version.longValue() + count);
+        }
+        return views;
+    }
+
+    public List<Map<String, Object>> overlayFields(List<Map<String, Object>> rows) {
+        if (pending.isEmpty() && flushing.isEmpty()) {
+            return rows;
+        }
+        List<Map<String, Object>> views = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            views.add(overlayFields(row));
+        }
+        return views;
+    }
+
+    /**
+     * Number of buffered changes to the contact not yet in its stored
+     * version, by which that version will advance.
+     */
+    public int pendingChanges(Long id, Long storedVersion) {
+        int count = 0;
+        for (Change change : changesOf(id, storedVersion)) {
+            count += change.count;
+        }
+        return count;
+    }
+
+    // oldest first; pending is read before flushing, as the flush moves
+    // changes the other way. A flushing change is left out once the stored
+    // version read includes it: its commit precedes removing it from flushing
+    private List<Change> changesOf(Long id, Long storedVersion) {
+        Change newer = pending.get(id);
+        Change older = flushing.get(id);
+        if (older != null && older.isIn(storedVersion)) {
+            older = null;
+        }
+        if (older == null || older == newer) {
+            return newer == null ? Collections.emptyList() : Collections.singletonList(newer);
+        }
+        List<Change> changes = new ArrayList<>(2);
+        changes.add(older);
+        if (newer != null) {
+            changes.add(newer);
+        }
+        return changes;
+    }
+
+    private void flushPending() {
+        flushRequested.set(false);
+        try {
+            while (!pending.isEmpty()) {
+                Map<Long, Change> batch = new LinkedHashMap<>();
+                for (Long id : pending.keySet()) {
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    pending.computeIfPresent(id, (key, change) -> {
+                        flushing.put(key, change);
+                        batch.put(key, change);
+                        return null;
+                    });
+                }
+                write(batch);
+            }
+        } catch (RuntimeException ex) {
+            // log exception first, then keep flushing on schedule
+            logger.error("Write-behind flush failed: " + ex.getMessage(), ex);
+        }
+    }
+
+    private void write(Map<Long, Change> batch) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "ok";
+        try {
+            Map<Long, Long> updated = writeAll(batch);
+            for (Map.Entry<Long, Change> entry : batch.entrySet()) {
+                completed(entry.getKey(), entry.getValue(), updated.containsKey(entry.getKey()));
+            }
+        } catch (RuntimeException ex) {
+            // log exception first, then write one by one so a bad row only fails itself
+            logger.warn("Write-behind batch of " + batch.size() + " failed, retrying one by one: " 
+                    + ex.getMessage());
+            outcome = "retried";
+            for (Map.Entry<Long, Change> entry : batch.entrySet()) {
+                try {
+                    Map<Long, Long> updated = writeAll(Collections.singletonMap(entry.getKey(), 
+                            entry.getValue()));
+                    completed(entry.getKey(), entry.getValue(), !updated.isEmpty());
+                } catch (RuntimeException single) {
+                    logger.error("Write-behind of contact " + entry.getKey() + " failed: " 
+                            + single.getMessage());
+                    failed.increment();
+                    flushing.remove(entry.getKey(), entry.getValue());
+                    contactResponseCache.evict(entry.getKey());
+                    entry.getValue().written.completeExceptionally(single);
+                }
+            }
+        } finally {
+            batchSizes.record(batch.size());
+            sample.stop(Timer.builder(METRIC_PREFIX + ".flush")
+                    .description("Write-behind flushes")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private Map<Long, Long> writeAll(Map<Long, Change> batch) {
+        List<Contact> rows = new ArrayList<>();
+        List<Integer> rowCounts = new ArrayList<>();
+        List<Long> addressIds = new ArrayList<>();
+        List<Address> addresses = new ArrayList<>();
+        List<Integer> addressCounts = new ArrayList<>();
+        for (Map.Entry<Long, Change> entry : batch.entrySet()) {
+            Change change = entry.getValue();
+            if (change.row != null) {
+                rows.add(change.row);
+                rowCounts.add(change.count);
+            } else {
+                addressIds.add(entry.getKey());
+                addresses.add(change.address);
+                addressCounts.add(change.count);
+            }
+        }
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Map<Long, Long> updated = rows.isEmpty() ? new HashMap<>()
+                    : new HashMap<>(contactRepository.updateAll(rows, toArray(rowCounts)));
+            if (!addresses.isEmpty()) {
+                updated.putAll(contactRepository.updateAddresses(addressIds, addresses, 
+                        toArray(addressCounts)));
+            }
+            // before the commit, so no read can see the new version without it
+            for (Map.Entry<Long, Long> entry : updated.entrySet()) {
+                batch.get(entry.getKey()).writtenVersion = entry.getValue();
+            }
+            return updated;
+        });
+    }
+
+    private void completed(Long id, Change change, boolean updated) {
+        if (!updated) {
+            logger.warn("Write-behind of contact " + id + " lost, it was deleted meanwhile");
+            lost.increment();
+        }
+        flushing.remove(id, change);
+        contactResponseCache.evict(id);
+        contactReadFlights.changed(Collections.singletonList(id));
+        change.written.complete(updated);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static Object valueOf(Contact contact, String field) {
+        switch (field) {
+            case "name":
+                return contact.getName();
+            case "phone":
+                return contact.getPhone();
+            case "email":
+                return contact.getEmail();
+            case Address.ADDRESS1:
+                return contact.getAddress1();
+            case Address.ADDRESS2:
+                return contact.getAddress2();
+            case Address.ADDRESS3:
+                return contact.getAddress3();
+            case Address.POSTAL_CODE:
+                return contact.getPostalCode();
+            case "note":
+                return contact.getNote();
+            default:
+                return null;
+        }
+    }
+
+    private static Contact copyOf(Contact contact) {
+        Contact copy = new Contact();
+        copy.setId(contact.getId());
+        copy.setName(contact.getName());
+        copy.setPhone(contact.getPhone());
+        copy.setEmail(contact.getEmail());
+        copy.setAddress1(contact.getAddress1());
+        copy.setAddress2(contact.getAddress2());
+        copy.setAddress3(contact.getAddress3());
+        copy.setPostalCode(contact.getPostalCode());
+        copy.setNote(contact.getNote());
+        copy.setVersion(contact.getVersion());
+        return copy;
+    }
+
+    private static Address copyOf(Address address) {
+        Address copy = new Address();
+        return laidOver(copy, address);
+    }
+
+    // sets the fields present in top on target
+    private static Address laidOver(Address target, Address top) {
+        if (top.isPresent(Address.ADDRESS1)) {
+            target.setAddress1(top.getAddress1());
+        }
+        if (top.isPresent(Address.ADDRESS2)) {
+            target.setAddress2(top.getAddress2());
+        }
+        if (top.isPresent(Address.ADDRESS3)) {
+            target.setAddress3(top.getAddress3());
+        }
+        if (top.isPresent(Address.POSTAL_CODE)) {
+            target.setPostalCode(top.getPostalCode());
+        }
+        return target;
+    }
+
+    /**
+     * Buffered changes to one contact: either a full row, or address fields
+     * only. Immutable but for the version it was written as, merging makes a
+     * new one sharing the future completed once it is written (with false if
+     * the contact no longer exists).
+     */
+    private static final class Change {
+
+        private final Contact row;
+        private final Address address;
+        private final int count;
+        private final CompletableFuture<Boolean> written;
+        private volatile Long writtenVersion;
+
+        Change(Contact row, Address address) {
+            this(row, address, 1, new CompletableFuture<>());
+        }
+
+        private Change(Contact row, Address address, int count, CompletableFuture<Boolean> written) {
+            this.row = row;
+            this.address = address;
+            this.count = count;
+            this.written = written;
+        }
+
+        Change then(Change later) {
+            if (later.row != null) {
+                return new Change(later.row, null, count + later.count, written);
+            }
+            if (row != null) {
+                return new Change(applyAddress(copyOf(row), later.address), null, 
+                        count + later.count, written);
+            }
+            return new Change(null, laidOver(copyOf(address), later.address), 
+                    count + later.count, written);
+        }
+
+        // whether a contact read with this version already has the change
+        boolean isIn(Long version) {
+            Long target = writtenVersion;
+            return target != null && version != null && version >= target;
+        }
+
+        boolean sets(String field) {
+            return row != null ? !"id".equals(field) && !"version".equals(field) 
+                    : address.isPresent(field);
+        }
+
+        // on a copy of the contact
+        Contact applyTo(Contact contact) {
+            if (row != null) {
+                Contact view = copyOf(row);
+                view.setVersion(contact.getVersion());
+                return view;
+            }
+            return applyAddress(copyOf(contact), address);
+        }
+
+        private static Contact applyAddress(Contact contact, Address address) {
+            if (address.isPresent(Address.ADDRESS1)) {
+                contact.setAddress1(address.getAddress1());
+            }
+            if (address.isPresent(Address.ADDRESS2)) {
+                contact.setAddress2(address.getAddress2());
+            }
+            if (address.isPresent(Address.ADDRESS3)) {
+                contact.setAddress3(address.getAddress3());
+            }
+            if (address.isPresent(Address.POSTAL_CODE)) {
+                contact.setPostalCode(address.getPostalCode());
+            }
+            return contact;
+        }
+    }
+}
@@ -39,6 +39,8 @@
 package com.dariawan.contactapp.specification;
 
 import com.dariawan.contactapp.domain.Contact;
+import java.util.ArrayList;
+import java.util.List;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
@@ -47,6 +49,8 @@ import org.springframework.data.jpa.domain.Specification;
 
 public class ContactSpecification implements Specification<Contact> {
 
+    private static final char ESCAPE_CHAR = '\\';
+
     private Contact filter;
 
     public ContactSpecification(Contact filter) {
@@ -58,15 +62,22 @@ public class ContactSpecification implements Specification<Contact> {
     public Predicate toPredicate(Root<Contact> root, CriteriaQuery<?> cq,
             CriteriaBuilder cb) {
 
-        Predicate p = cb.disjunction();
+        // plain OR of single-column LIKEs, so each side can use its trigram
+        // index (see src/sql/contact_search.sql) and be combined by a BitmapOr
+        List<Predicate> predicates = new ArrayList<>();
 
         if (filter.getName() != null) {
-            p.getExpressions().add(cb.like(root.get("name"), "%" + filter.getName() + "%"));
+            predicates.add(cb.like(root.get("name"), contains(filter.getName()), ESCAPE_CHAR));
         }
 
         if (filter.getPhone()!= null) {
-            p.getExpressions().add(cb.like(root.get("phone"), "%" + filter.getPhone() + "%"));
+            predicates.add(cb.like(root.get("phone"), contains(filter.getPhone()), ESCAPE_CHAR));
+        }
+        
+        if (predicates.isEmpty()) {
+            return cb.disjunction();
         }
+        Predicate p = cb.or(predicates.toArray(new Predicate[predicates.size()]));
         
         /*
         if (filter.getName()!= null && filter.getPhone()!= null) {
@@ -79,4 +90,15 @@ public class ContactSpecification implements Specification<Contact> {
 
         return p;
     }
+
+    /**
+     * Wrap the search term as %term%, escaping LIKE wildcards typed by the
+     * user so they are matched literally.
+     */
+    public static String contains(String term) {
+        String escaped = term.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
 }
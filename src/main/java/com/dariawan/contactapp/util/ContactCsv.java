@@ -0,0 +1,157 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.util;
+
+import com.dariawan.contactapp.domain.Contact;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV layout of a contact (RFC 4180 quoting), shared by export and import.
+ * Null is written as an empty field and empty strings as {@code ""}, the
+ * way PostgreSQL COPY tells them apart; empty unquoted fields are read back
+ * as null.
+ */
+public final class ContactCsv {
+
+    public static final String[] HEADER = {"id", "name", "phone", "email", 
+        "address1", "address2", "address3", "postal_code", "note"};
+
+    private ContactCsv() {
+    }
+
+    public static void writeHeader(Writer writer) throws IOException {
+        writeRow(writer, HEADER);
+    }
+
+    public static void writeContact(Writer writer, Contact contact) throws IOException {
+        writeRow(writer, new String[]{
+            contact.getId() == null ? null : contact.getId().toString(),
+            contact.getName(), contact.getPhone(), contact.getEmail(),
+            contact.getAddress1(), contact.getAddress2(), contact.getAddress3(),
+            contact.getPostalCode(), contact.getNote()});
+    }
+
+    public static void writeRow(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeValue(writer, values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Reads one record, which may span several lines when a quoted value
+     * contains line breaks.
+     *
+     * @return the values of the record, or null at end of input
+     */
+    public static String[] readRow(BufferedReader reader) throws IOException {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        while (true) {
+            if (inQuotes) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted value");
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        value.append('"');
+                    } else {
+                        inQuotes = false;
+                        reader.reset();
+                    }
+                } else {
+                    value.append((char) c);
+                }
+            } else if (c == '"' && value.length() == 0) {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',' || c == '\n' || c == '\r' || c == -1) {
+                values.add(value.length() == 0 && !quoted ? null : value.toString());
+                value.setLength(0);
+                quoted = false;
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                }
+                if (c != ',') {
+                    return values.toArray(new String[values.size()]);
+                }
+            } else {
+                value.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+    private static void writeValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        // quoted, or it would read back as null
+        boolean quote = value.isEmpty();
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
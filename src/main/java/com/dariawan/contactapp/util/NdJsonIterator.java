@@ -0,0 +1,116 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads newline-delimited JSON one line at a time. Blank lines are skipped,
+ * a line that cannot be parsed makes {@link #next()} throw a
+ * {@link MalformedLineException} with the parser's message, after which the
+ * caller can report it and go on with the next one.
+ */
+public class NdJsonIterator<T> implements Iterator<T> {
+
+    private final BufferedReader reader;
+
+    private final ObjectReader objectReader;
+
+    private String nextLine;
+
+    private int lineNumber;
+
+    public NdJsonIterator(BufferedReader reader, ObjectReader objectReader) {
+        this.reader = reader;
+        this.objectReader = objectReader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (nextLine == null) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+                lineNumber++;
+                if (!line.trim().isEmpty()) {
+                    nextLine = line;
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String line = nextLine;
+        nextLine = null;
+        try {
+            return objectReader.readValue(line);
+        } catch (JsonProcessingException ex) {
+            throw new MalformedLineException(lineNumber, ex);
+        }
+    }
+
+    /**
+     * A line that is not valid JSON for the type read; the stream itself can
+     * still be read on.
+     */
+    public static class MalformedLineException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public MalformedLineException(int lineNumber, JsonProcessingException cause) {
+            // the original message leaves out the source, which echoes the line
+            super("line " + lineNumber + ": " + cause.getOriginalMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the
+ * loader, callers arriving while it runs wait for its result instead of
+ * running their own, and get its exception if it throws. A caller waits at
+ * most {@code maxWait}, then loads by itself. Nothing is cached, the next
+ * caller after a load completes starts a new one.
+ * <p>
+ * One instance per kind of load, as followers get the exception the leader's
+ * loader threw, whatever their own loader declares.
+ * <p>
+ * Values callers may change, such as entities attached to the leader's
+ * session, need a copier: the leader keeps the value it loaded, each follower
+ * gets its own copy of a snapshot taken when the load completed.
+ */
+public final class SingleFlight<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<V, E extends Exception> {
+        V load() throws E;
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final long maxWaitNanos;
+
+    private final UnaryOperator<V> copier;
+
+    /**
+     * For values nobody changes, shared as they are.
+     */
+    public SingleFlight(Duration maxWait) {
+        this(maxWait, UnaryOperator.identity());
+    }
+
+    public SingleFlight(Duration maxWait, UnaryOperator<V> copier) {
+        this.maxWaitNanos = maxWait.toNanos();
+        this.copier = copier;
+    }
+
+    public <E extends Exception> V load(K key, Loader<V, E> loader) throws E {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, flight);
+        if (leader == null) {
+            try {
+                V value = loader.load();
+                flight.complete(value == null ? null : copier.apply(value));
+                return value;
+            } catch (Throwable ex) {
+                flight.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+
+        try {
+            V value = leader.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+            return value == null ? null : copier.apply(value);
+        } catch (ExecutionException ex) {
+            throw SingleFlight.<E>rethrow(ex.getCause());
+        } catch (TimeoutException ex) {
+            // the leader is stuck, do not queue behind it any longer
+            return loader.load();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a concurrent load of " + key, ex);
+        }
+    }
+
+    /**
+     * Callers arriving from now on no longer join the load of {@code key}
+     * running now, they start a new one.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    // the leader's loader only throws what a loader of this instance throws
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> E rethrow(Throwable cause) throws E {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw (E) cause;
+    }
+}
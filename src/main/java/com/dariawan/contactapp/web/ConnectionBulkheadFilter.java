@@ -0,0 +1,148 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.web;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Lets only as many API requests run as there are connections in the pool,
+ * enabled with {@code contactapp.bulkhead.enabled=true}.
+ * <p>
+ * Every contact request blocks its worker thread on JDBC, so once all
+ * connections are taken further requests only pile up inside Hikari until
+ * its connection timeout. Here they wait on a fair semaphore instead, for at
+ * most {@code contactapp.bulkhead.acquire-timeout}, and are then turned away
+ * with 503 and Retry-After while the requests already running finish.
+ */
+@Component
+@ConditionalOnProperty(name = "contactapp.bulkhead.enabled", havingValue = "true")
+public class ConnectionBulkheadFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    @Autowired
+    private DataSource dataSource;
+
+    // 0 sizes the bulkhead to the connection pool
+    @Value("${contactapp.bulkhead.permits:0}")
+    private int permits;
+
+    @Value("${contactapp.bulkhead.acquire-timeout:2s}")
+    private Duration acquireTimeout;
+
+    private Semaphore semaphore;
+
+    @PostConstruct
+    public void init() {
+        if (permits <= 0) {
+            HikariDataSource hikari = DataSourceUnwrapper.unwrap(dataSource, HikariDataSource.class);
+            // until the pool starts Hikari reports -1 for its default size
+            permits = hikari != null && hikari.getMaximumPoolSize() > 0
+                    ? hikari.getMaximumPoolSize()
+                    : DEFAULT_POOL_SIZE;
+        }
+        semaphore = new Semaphore(permits, true);
+        logger.info("Bulkhead admits " + permits + " concurrent API requests");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
+            FilterChain filterChain) throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            // log first, then return Service Unavailable (503)
+            logger.error("Bulkhead full, rejected " + request.getMethod() + " " + request.getRequestURI());
+            response.setHeader(HttpHeaders.RETRY_AFTER, 
+                    String.valueOf(Math.max(1, acquireTimeout.getSeconds())));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("contactapp.bulkhead.available", semaphore, Semaphore::availablePermits)
+                .description("Requests the bulkhead can still admit")
+                .register(registry);
+        Gauge.builder("contactapp.bulkhead.waiting", semaphore, Semaphore::getQueueLength)
+                .description("Requests waiting to be admitted")
+                .register(registry);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.web;
+
+import com.dariawan.contactapp.jdbc.RoutingContext;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Read-your-writes for replica routing: reads of a request that wrote go to
+ * the primary, and so do the client's reads for
+ * {@code contactapp.routing.sticky-window} afterwards, while replicas catch
+ * up. The window is carried by the {@value #COOKIE} cookie, so it holds
+ * across instances; a window of 0 only keeps the writing request on the
+ * primary.
+ */
+@Component
+@ConditionalOnProperty(name = "contactapp.routing.enabled", havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE = "contactapp-primary";
+
+    @Value("${contactapp.routing.sticky-window:5s}")
+    private Duration stickyWindow;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
+            FilterChain filterChain) throws ServletException, IOException {
+        RoutingContext.Request routing = RoutingContext.beginRequest(
+                !stickyWindow.isZero() && pinnedUntil(request) > System.currentTimeMillis());
+        StickyResponse stickyResponse = new StickyResponse(request, response, routing);
+        try {
+            filterChain.doFilter(request, stickyResponse);
+        } finally {
+            RoutingContext.endRequest();
+            stickyResponse.writeCookie();
+        }
+    }
+
+    private static long pinnedUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE.equals(cookie.getName())) {
+                    try {
+                        return Long.parseLong(cookie.getValue());
+                    } catch (NumberFormatException ex) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sets the cookie just before the body is written, if the request wrote.
+     */
+    private class StickyResponse extends HttpServletResponseWrapper {
+
+        private final HttpServletRequest request;
+        private final RoutingContext.Request routing;
+        private boolean cookieWritten;
+
+        StickyResponse(HttpServletRequest request, HttpServletResponse response, 
+                RoutingContext.Request routing) {
+            super(response);
+            this.request = request;
+            this.routing = routing;
+        }
+
+        void writeCookie() {
+            // a GET only reads, whatever it used the primary for (such as an export)
+            if (!cookieWritten && !isCommitted() && routing.hasWritten() && !stickyWindow.isZero()
+                    && !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+                Cookie cookie = new Cookie(COOKIE, 
+                        String.valueOf(System.currentTimeMillis() + stickyWindow.toMillis()));
+                cookie.setMaxAge((int) Math.max(1, (stickyWindow.toMillis() + 999) / 1000));
+                cookie.setPath(request.getContextPath() + "/api");
+                cookie.setHttpOnly(true);
+                addCookie(cookie);
+            }
+            cookieWritten = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeCookie();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeCookie();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeCookie();
+            super.flushBuffer();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.web;
+
+import com.dariawan.contactapp.jdbc.SqlStatementCounter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Reports the SQL statements each API request ran, in the
+ * {@value #COUNT_HEADER} and {@value #TIME_HEADER} (milliseconds) response
+ * headers, and logs requests running more than
+ * {@code contactapp.sql-stats.warn-threshold} statements. Statements made
+ * after the body started, as by a streamed export, are only logged.
+ */
+@Component
+@ConditionalOnProperty(name = "contactapp.sql-stats.enabled", havingValue = "true")
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    public static final String COUNT_HEADER = "X-Sql-Count";
+
+    public static final String TIME_HEADER = "X-Sql-Time";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${contactapp.sql-stats.warn-threshold:10}")
+    private int warnThreshold;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
+            FilterChain filterChain) throws ServletException, IOException {
+        SqlStatementCounter.Stats stats = SqlStatementCounter.begin();
+        StatsResponse statsResponse = new StatsResponse(response, stats);
+        try {
+            filterChain.doFilter(request, statsResponse);
+        } finally {
+            SqlStatementCounter.end();
+            statsResponse.writeHeaders();
+            if (stats.getCount() > warnThreshold) {
+                logger.warn(request.getMethod() + " " + request.getRequestURI() + " ran " 
+                        + stats.getCount() + " SQL statements in " + stats.getElapsedMillis() + " ms");
+            } else if (logger.isDebugEnabled()) {
+                logger.debug(request.getMethod() + " " + request.getRequestURI() + " ran " 
+                        + stats.getCount() + " SQL statements in " + stats.getElapsedMillis() + " ms");
+            }
+        }
+    }
+
+    /**
+     * Adds the headers just before the body is written, the last moment they
+     * can still be sent.
+     */
+    private static class StatsResponse extends HttpServletResponseWrapper {
+
+        private final SqlStatementCounter.Stats stats;
+        private boolean headersWritten;
+
+        StatsResponse(HttpServletResponse response, SqlStatementCounter.Stats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void writeHeaders() {
+            if (!headersWritten && !isCommitted()) {
+                setHeader(COUNT_HEADER, String.valueOf(stats.getCount()));
+                setHeader(TIME_HEADER, String.valueOf(stats.getElapsedMillis()));
+            }
+            headersWritten = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+    }
+}
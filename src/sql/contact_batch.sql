@@ -0,0 +1,7 @@
+-- Contact ids come from contact_id_seq through Hibernate's pooled-lo optimizer:
+-- each nextval reserves a block of 50 ids, so bulk inserts need one sequence
+-- call per 50 rows and can be sent as JDBC batches.
+-- Must match increment_size on Contact.id. Rows inserted with DEFAULT still work,
+-- they just skip ahead by 50.
+
+ALTER SEQUENCE contact_id_seq INCREMENT BY 50;
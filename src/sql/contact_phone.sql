@@ -0,0 +1,17 @@
+-- Digits-only phone keys maintained by Contact on insert/update.
+-- phone_digits serves exact and prefix lookups, phone_digits_rev (digits reversed)
+-- turns "last N digits" into a prefix, i.e. a btree range scan.
+-- "C" collation keeps digit strings in byte order so range bounds are exact.
+
+ALTER TABLE contact ADD COLUMN IF NOT EXISTS phone_digits character varying(25) COLLATE "C";
+ALTER TABLE contact ADD COLUMN IF NOT EXISTS phone_digits_rev character varying(25) COLLATE "C";
+
+UPDATE contact
+   SET phone_digits = nullif(regexp_replace(phone, '[^0-9]', '', 'g'), ''),
+       phone_digits_rev = reverse(nullif(regexp_replace(phone, '[^0-9]', '', 'g'), ''))
+ WHERE phone IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS contact_phone_digits_idx ON contact (phone_digits);
+CREATE INDEX IF NOT EXISTS contact_phone_digits_rev_idx ON contact (phone_digits_rev);
+
+ANALYZE contact;
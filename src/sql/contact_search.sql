@@ -0,0 +1,11 @@
+-- Trigram indexes for ContactSpecification substring search (name/phone LIKE '%x%').
+-- A leading wildcard cannot use a btree, but GIN with gin_trgm_ops can; with both
+-- columns indexed the planner combines them into a BitmapOr instead of a seq scan.
+-- Patterns shorter than 3 characters carry no trigram and still scan the table.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS contact_name_trgm_idx ON contact USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS contact_phone_trgm_idx ON contact USING gin (phone gin_trgm_ops);
+
+ANALYZE contact;
@@ -0,0 +1,6 @@
+-- Unique normalized email, the conflict target of PUT /api/contacts:upsert when
+-- contactapp.upsert.conflict-key = EMAIL (ON CONFLICT ((lower(email)))).
+-- Fails if the table already holds the same email twice; merge those first:
+--   select lower(email), count(*) from contact group by 1 having count(*) > 1;
+
+CREATE UNIQUE INDEX IF NOT EXISTS contact_email_lower_key ON contact (lower(email));
@@ -0,0 +1,4 @@
+-- Optimistic locking column for Contact (@Version). Every update bumps it, and
+-- PUT /api/contacts/{id} with If-Match only applies when it still matches.
+
+ALTER TABLE contact ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,128 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Arrays;
+import javax.sql.DataSource;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replica1Connection = mock(Connection.class);
+    private final Connection replica2Connection = mock(Connection.class);
+
+    private DataSource replica2;
+    private ReplicaRoutingDataSource routing;
+
+    @Before
+    public void setUp() throws SQLException {
+        DataSource primary = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        DataSource replica1 = mock(DataSource.class);
+        when(replica1.getConnection()).thenReturn(replica1Connection);
+        replica2 = mock(DataSource.class);
+        when(replica2.getConnection()).thenReturn(replica2Connection);
+        routing = new ReplicaRoutingDataSource(primary, Arrays.asList(replica1, replica2), 
+                ReplicaRoutingDataSource.Balance.ROUND_ROBIN);
+    }
+
+    @After
+    public void tearDown() {
+        RoutingContext.endRequest();
+    }
+
+    @Test
+    public void testReadOnlyCallsAlternateBetweenReplicas() throws SQLException {
+        assertSame(primaryConnection, routing.getConnection());
+        boolean outer = RoutingContext.enterReadOnly();
+        try {
+            assertSame(replica1Connection, routing.getConnection());
+            assertSame(replica2Connection, routing.getConnection());
+            assertSame(replica1Connection, routing.getConnection());
+        } finally {
+            RoutingContext.exitReadOnly(outer);
+        }
+        assertSame(primaryConnection, routing.getConnection());
+    }
+
+    @Test
+    public void testReadsAfterWriteInRequestUsePrimary() throws SQLException {
+        RoutingContext.Request request = RoutingContext.beginRequest(false);
+        assertSame(replica1Connection, readOnlyConnection());
+        assertFalse(request.hasWritten());
+        
+        assertSame(primaryConnection, routing.getConnection());
+        assertTrue(request.hasWritten());
+        assertSame(primaryConnection, readOnlyConnection());
+    }
+
+    @Test
+    public void testPinnedRequestReadsPrimary() throws SQLException {
+        RoutingContext.Request request = RoutingContext.beginRequest(true);
+        assertSame(primaryConnection, readOnlyConnection());
+        assertFalse(request.hasWritten());
+    }
+
+    @Test
+    public void testUnavailableReplicaFallsBackToPrimary() throws SQLException {
+        when(replica2.getConnection()).thenThrow(new SQLTransientConnectionException("down"));
+        assertSame(replica1Connection, readOnlyConnection());
+        assertSame(primaryConnection, readOnlyConnection());
+    }
+
+    private Connection readOnlyConnection() throws SQLException {
+        boolean outer = RoutingContext.enterReadOnly();
+        try {
+            return routing.getConnection();
+        } finally {
+            RoutingContext.exitReadOnly(outer);
+        }
+    }
+}
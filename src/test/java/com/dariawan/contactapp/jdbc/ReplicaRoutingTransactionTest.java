@@ -0,0 +1,151 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.jdbc;
+
+import com.dariawan.contactapp.domain.Contact;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A request whose session stays open in view, reading from a replica and then
+ * writing, with the entity manager factory configured as with routing enabled.
+ */
+public class ReplicaRoutingTransactionTest {
+
+    private static final String WRITE_SQL = "update contact set note = null where id = 1";
+
+    private final Connection primaryConnection = connection();
+    private final Connection replicaConnection = connection();
+
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private JpaTransactionManager transactionManager;
+
+    @Before
+    public void setUp() throws SQLException {
+        DataSource primary = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        DataSource replica = mock(DataSource.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+
+        ReplicaRoutingPostProcessor postProcessor = new ReplicaRoutingPostProcessor();
+        HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+        postProcessor.postProcessBeforeInitialization(vendorAdapter, "jpaVendorAdapter");
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new ReplicaRoutingDataSource(primary, Collections.singletonList(replica),
+                ReplicaRoutingDataSource.Balance.ROUND_ROBIN));
+        factoryBean.setJpaVendorAdapter(vendorAdapter);
+        factoryBean.setPackagesToScan("com.dariawan.contactapp.domain");
+        factoryBean.getJpaPropertyMap().put(AvailableSettings.DIALECT, 
+                "org.hibernate.dialect.PostgreSQL82Dialect");
+        // no database: do not ask the connection for its metadata at startup
+        factoryBean.getJpaPropertyMap().put("hibernate.temp.use_jdbc_metadata_defaults", false);
+        postProcessor.postProcessBeforeInitialization(factoryBean, "entityManagerFactory");
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        transactionManager = new JpaTransactionManager(entityManagerFactory);
+
+        // open in view
+        entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, 
+                new EntityManagerHolder(entityManager));
+        RoutingContext.beginRequest(false);
+    }
+
+    @After
+    public void tearDown() {
+        RoutingContext.endRequest();
+        TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        entityManager.close();
+        factoryBean.destroy();
+    }
+
+    @Test
+    public void testWriteAfterReadInRequestUsesPrimary() throws SQLException {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        boolean outer = RoutingContext.enterReadOnly();
+        try {
+            readOnly.execute(status -> entityManager.find(Contact.class, 1L));
+        } finally {
+            RoutingContext.exitReadOnly(outer);
+        }
+        new TransactionTemplate(transactionManager).execute(status -> 
+                entityManager.createNativeQuery(WRITE_SQL).executeUpdate());
+
+        verify(replicaConnection).prepareStatement(startsWith("select"));
+        verify(replicaConnection, never()).prepareStatement(WRITE_SQL);
+        verify(primaryConnection).prepareStatement(WRITE_SQL);
+    }
+
+    private static Connection connection() {
+        try {
+            Connection connection = mock(Connection.class);
+            PreparedStatement statement = mock(PreparedStatement.class);
+            when(connection.prepareStatement(anyString())).thenReturn(statement);
+            when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+            return connection;
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sql.DataSource;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.ChainListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Assertions on the number of SQL statements an operation runs, so a hidden
+ * extra round trip fails the build. Needs {@code contactapp.sql-stats.enabled},
+ * off by default and turned on for the tests in {@code config/application.properties}.
+ * <pre>
+ * SqlStatements.assertAtMost(1, () -&gt; contactService.findById(id));
+ * </pre>
+ * {@link #capture} returns the statements themselves, with their parameters.
+ */
+public final class SqlStatements {
+
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    private SqlStatements() {
+    }
+
+    public static int count(Operation operation) throws Exception {
+        SqlStatementCounter.Stats stats = SqlStatementCounter.begin();
+        try {
+            operation.run();
+        } finally {
+            SqlStatementCounter.end();
+        }
+        return stats.getCount();
+    }
+
+    /**
+     * Statements the current thread runs through {@code dataSource} (the
+     * datasource proxy) during the operation.
+     */
+    public static List<QueryInfo> capture(DataSource dataSource, Operation operation) throws Exception {
+        Thread thread = Thread.currentThread();
+        List<QueryInfo> queries = new ArrayList<>();
+        QueryExecutionListener listener = new QueryExecutionListener() {
+            @Override
+            public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            }
+
+            @Override
+            public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                if (Thread.currentThread() == thread) {
+                    queries.addAll(queryInfoList);
+                }
+            }
+        };
+        ChainListener chain = ((ProxyDataSource) dataSource).getProxyConfig().getQueryListener();
+        if (!(chain.getListeners() instanceof CopyOnWriteArrayList)) {
+            // other threads may be running statements meanwhile
+            chain.setListeners(new CopyOnWriteArrayList<>(chain.getListeners()));
+        }
+        chain.addListener(listener);
+        try {
+            operation.run();
+        } finally {
+            chain.getListeners().remove(listener);
+        }
+        return queries;
+    }
+
+    public static void assertAtMost(int max, Operation operation) throws Exception {
+        int count = count(operation);
+        assertTrue("Expected at most " + max + " SQL statements, but ran " + count, count <= max);
+    }
+
+    public static void assertExactly(int expected, Operation operation) throws Exception {
+        int count = count(operation);
+        assertTrue("Expected " + expected + " SQL statements, but ran " + count, count == expected);
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.search;
+
+import com.dariawan.contactapp.domain.Address;
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.repository.ContactRepository;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ContactSearchIndexTest {
+
+    private ContactSearchIndex index;
+    
+    @Before
+    public void buildIndex() {
+        index = new ContactSearchIndex();
+        index.index(contact(1L, "Monkey D. Luffy", "luffy@strawhatpirat.es", "Captain"));
+        index.index(contact(2L, "Roronoa Zoro", "zoro@strawhatpirat.es", "Swordsman"));
+        index.index(contact(3L, "Portgas D. Ace", "ace@whitebeard.com", "Brother of Luffy"));
+    }
+    
+    @Test
+    public void testRanking() {
+        List<Contact> contacts = index.search("luffy captain", 10);
+        assertEquals(2, contacts.size());
+        // matches both terms
+        assertEquals(Long.valueOf(1L), contacts.get(0).getId());
+        assertEquals(Long.valueOf(3L), contacts.get(1).getId());
+    }
+    
+    @Test
+    public void testUpdateAndRemove() {
+        index.index(contact(2L, "Roronoa Zoro", "zoro@strawhatpirat.es", "Pirate hunter"));
+        assertTrue(index.search("swordsman", 10).isEmpty());
+        assertEquals(1, index.search("HUNTER", 10).size());
+        
+        index.remove(1L);
+        List<Contact> contacts = index.search("luffy", 10);
+        assertEquals(1, contacts.size());
+        assertEquals(Long.valueOf(3L), contacts.get(0).getId());
+        assertEquals(1, index.search("strawhatpirat", 10).size());
+    }
+    
+    @Test
+    public void testResultsCarryCurrentVersion() {
+        Contact luffy = contact(1L, "Monkey D. Luffy", "luffy@strawhatpirat.es", "Captain");
+        luffy.setVersion(3L);
+        index.index(luffy);
+        assertEquals(Long.valueOf(3L), index.search("captain", 10).get(0).getVersion());
+        
+        // unconditional update, the stored version advanced by one
+        index.index(contact(1L, "Monkey D. Luffy", "luffy@strawhatpirat.es", "Pirate king"));
+        assertEquals(Long.valueOf(4L), index.search("king", 10).get(0).getVersion());
+        
+        Address address = new Address();
+        address.setAddress1("Thousand Sunny");
+        index.indexAddress(1L, address);
+        assertEquals(Long.valueOf(5L), index.search("sunny", 10).get(0).getVersion());
+        
+        luffy.setVersion(9L);
+        index.index(luffy);
+        assertEquals(Long.valueOf(9L), index.search("captain", 10).get(0).getVersion());
+    }
+    
+    @Test
+    public void testWritesDuringBuildAreNotOverwritten() {
+        ContactRepository contactRepository = mock(ContactRepository.class);
+        ContactSearchIndex building = new ContactSearchIndex();
+        ReflectionTestUtils.setField(building, "contactRepository", contactRepository);
+        Contact stale = contact(1L, "Monkey D. Luffy", "luffy@strawhatpirat.es", "Captain");
+        stale.setVersion(1L);
+        Contact updated = contact(1L, "Monkey D. Luffy", "luffy@strawhatpirat.es", "Pirate king");
+        updated.setVersion(2L);
+        // the batch was read before the writes below
+        when(contactRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any())).thenAnswer(invocation -> {
+            building.index(updated);
+            building.remove(2L);
+            return Arrays.asList(stale, contact(2L, "Roronoa Zoro", "zoro@strawhatpirat.es", "Swordsman"));
+        });
+        when(contactRepository.findAllById(any())).thenReturn(Collections.singletonList(updated));
+
+        assertFalse(building.isReady());
+        building.build();
+        assertTrue(building.isReady());
+        assertTrue(building.search("captain", 10).isEmpty());
+        assertEquals(Long.valueOf(2L), building.search("king", 10).get(0).getVersion());
+        assertTrue(building.search("zoro", 10).isEmpty());
+    }
+    
+    @Test
+    public void testLimit() {
+        assertEquals(1, index.search("d", 1).size());
+        assertEquals(2, index.search("d", 5).size());
+    }
+    
+    private Contact contact(Long id, String name, String email, String note) {
+        Contact c = new Contact();
+        c.setId(id);
+        c.setName(name);
+        c.setEmail(email);
+        c.setNote(note);
+        return c;
+    }
+}
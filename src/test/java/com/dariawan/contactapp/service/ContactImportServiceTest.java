@@ -0,0 +1,93 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.domain.ImportJob;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ContactImportServiceTest {
+
+    private static final long IMPORT_TIMEOUT_MILLIS = 30000;
+
+    @Autowired 
+    private ContactService contactService;
+    
+    @Autowired 
+    private ContactImportService contactImportService;
+    
+    @Test
+    public void testLastRecordWinsForDuplicateIds() throws Exception {
+        Contact c = new Contact();
+        c.setName("Vista");
+        c.setPhone("09012345681");
+        c.setEmail("vista@whitebeard.com");
+        contactService.save(c);
+        
+        String csv = "id,name,phone,email\n"
+                + c.getId() + ",Vista,09012345681,vista@whitebeard.com\n"
+                + c.getId() + ",Flower Sword Vista,09012345681,vista@whitebeard.com\n";
+        ImportJob job = contactImportService.submit(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        long deadline = System.currentTimeMillis() + IMPORT_TIMEOUT_MILLIS;
+        while (job.getFinishedAt() == null) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Import not finished within " + IMPORT_TIMEOUT_MILLIS + " ms: " + job.getState());
+            }
+            Thread.sleep(50);
+        }
+        assertEquals(job.getMessage(), ImportJob.State.COMPLETED, job.getState());
+        assertEquals(2, job.getRecordsStaged());
+        assertEquals(0, job.getContactsInserted());
+        assertEquals(1, job.getContactsUpdated());
+        assertEquals("Flower Sword Vista", contactService.findById(c.getId()).getName());
+        
+        contactService.deleteById(c.getId());
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.config.CacheConfig;
+import com.dariawan.contactapp.domain.Contact;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ContactResponseCacheTest {
+
+    private final Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+    private ContactResponseCache responseCache;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.getCache(eq(CacheConfig.CONTACT_RESPONSE_REGION), any(Class.class), 
+                any(Class.class))).thenReturn(mock(Cache.class));
+        responseCache = new ContactResponseCache();
+        ReflectionTestUtils.setField(responseCache, "jcacheCacheManager", cacheManager);
+        ReflectionTestUtils.setField(responseCache, "objectMapper", builder.build());
+        ReflectionTestUtils.setField(responseCache, "objectMapperBuilder", builder);
+        responseCache.init();
+    }
+
+    @Test
+    public void testXmlListRootIsArrayListWhateverTheList() throws Exception {
+        List<Contact> contacts = Arrays.asList(contact(1L, "Jessica"), contact(2L, "Abigail"));
+        XmlMapper xmlMapper = builder.createXmlMapper(true).build();
+        String expected = xmlMapper.writeValueAsString(new ArrayList<>(contacts));
+        assertTrue(expected.startsWith("<ArrayList>"));
+
+        for (List<Contact> list : Arrays.asList(contacts, Collections.unmodifiableList(contacts), 
+                new ArrayList<>(contacts))) {
+            assertEquals(expected, new String(responseCache.xmlList(list), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testJsonArrayMatchesObjectMapper() throws Exception {
+        List<Contact> contacts = Arrays.asList(contact(1L, "Jessica"), contact(2L, "Abigail"));
+        ObjectMapper objectMapper = new Jackson2ObjectMapperBuilder().build();
+        assertEquals(objectMapper.writeValueAsString(contacts), 
+                new String(responseCache.jsonArray(contacts), StandardCharsets.UTF_8));
+    }
+
+    private static Contact contact(Long id, String name) {
+        Contact contact = new Contact();
+        contact.setId(id);
+        contact.setName(name);
+        contact.setVersion(0L);
+        return contact;
+    }
+}
@@ -40,13 +40,17 @@ package com.dariawan.contactapp.service;
 
 import com.dariawan.contactapp.domain.Contact;
 import com.dariawan.contactapp.exception.ResourceNotFoundException;
+import com.dariawan.contactapp.jdbc.SqlStatements;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.util.List;
+import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -66,6 +70,9 @@ public class ContactServiceJPATest {
     @Autowired 
     private ContactService contactService;
     
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
     @Before
     public void cleanTestData() throws Exception {
         try (Connection conn = dataSource.getConnection()) {
@@ -119,5 +126,42 @@ public class ContactServiceJPATest {
         // query after delete
         exceptionRule.expect(ResourceNotFoundException.class);
         contactService.findById(c.getId());
-    }    
+    }
+    
+    @Test
+    public void testFindByIdServedFromSecondLevelCache() throws Exception {
+        Contact c = new Contact();
+        c.setName("Marco");
+        c.setPhone("09012345679");
+        c.setEmail("marco@whitebeard.com");
+        contactService.save(c);
+        
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        // first read may go to the database, the next ones must not
+        contactService.findById(c.getId());
+        long statements = statistics.getPrepareStatementCount();
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Marco", contactService.findById(c.getId()).getName());
+        }
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() >= 10);
+        
+        contactService.deleteById(c.getId());
+    }
+    
+    @Test
+    public void testSingleStatementReadsAndWrites() throws Exception {
+        Contact c = new Contact();
+        c.setName("Jozu");
+        c.setPhone("09012345680");
+        c.setEmail("jozu@whitebeard.com");
+        contactService.save(c);
+        entityManagerFactory.getCache().evict(Contact.class);
+        
+        SqlStatements.assertAtMost(1, () -> contactService.findById(c.getId()));
+        c.setNote("Diamond");
+        SqlStatements.assertExactly(1, () -> contactService.update(c));
+        SqlStatements.assertExactly(1, () -> contactService.deleteById(c.getId()));
+    }
 }
@@ -0,0 +1,215 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.service;
+
+import com.dariawan.contactapp.domain.Address;
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.repository.ContactRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class ContactWriteBehindTest {
+
+    private final ContactRepository contactRepository = mock(ContactRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ContactWriteBehind writeBehind;
+
+    @Before
+    public void setUp() {
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.getCache()).thenReturn(mock(Cache.class));
+        when(contactRepository.existsById(anyLong())).thenReturn(true);
+        when(contactRepository.updateAll(anyList(), any())).thenReturn(Collections.singletonMap(1L, 5L));
+        when(contactRepository.updateAddresses(anyList(), anyList(), any()))
+                .thenReturn(Collections.singletonMap(1L, 5L));
+
+        writeBehind = new ContactWriteBehind();
+        ReflectionTestUtils.setField(writeBehind, "contactRepository", contactRepository);
+        ReflectionTestUtils.setField(writeBehind, "contactResponseCache", mock(ContactResponseCache.class));
+        ReflectionTestUtils.setField(writeBehind, "contactReadFlights", mock(ContactReadFlights.class));
+        ReflectionTestUtils.setField(writeBehind, "transactionManager", 
+                mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(writeBehind, "entityManagerFactory", entityManagerFactory);
+        ReflectionTestUtils.setField(writeBehind, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(writeBehind, "batchSize", 100);
+        // flushed by the tests
+        ReflectionTestUtils.setField(writeBehind, "flushInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(writeBehind, "durability", ContactWriteBehind.Durability.BUFFERED);
+        ReflectionTestUtils.setField(writeBehind, "flushTimeout", Duration.ofSeconds(5));
+        writeBehind.init();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        writeBehind.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUpdatesAreMergedAndSeenBeforeFlush() {
+        assertTrue(writeBehind.update(contact("Jessica", "Old Street")));
+        Address address = new Address();
+        address.setAddress1("New Street");
+        assertTrue(writeBehind.updateAddress(1L, address));
+
+        Contact stored = contact("Stored", "Stored Street");
+        stored.setVersion(3L);
+        Contact view = writeBehind.overlay(stored);
+        assertEquals("Jessica", view.getName());
+        assertEquals("New Street", view.getAddress1());
+        assertEquals(Long.valueOf(5L), view.getVersion());
+        assertEquals("Stored", stored.getName());
+        assertEquals(2, writeBehind.pendingChanges(1L, 3L));
+
+        writeBehind.flush();
+        ArgumentCaptor<List<Contact>> rows = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<int[]> increments = ArgumentCaptor.forClass(int[].class);
+        verify(contactRepository, times(1)).updateAll(rows.capture(), increments.capture());
+        verify(contactRepository, never()).updateAddresses(anyList(), anyList(), any());
+        assertEquals(1, rows.getValue().size());
+        assertEquals("New Street", rows.getValue().get(0).getAddress1());
+        assertEquals(2, increments.getValue()[0]);
+        assertSame(stored, writeBehind.overlay(stored));
+        assertEquals(1.0, meterRegistry.get(ContactWriteBehind.METRIC_PREFIX + ".changes")
+                .tag("result", "coalesced").counter().count(), 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAddressChangesAreMerged() {
+        Address first = new Address();
+        first.setAddress1("First Street");
+        first.setPostalCode("12345");
+        Address second = new Address();
+        second.setPostalCode(null);
+        writeBehind.updateAddress(1L, first);
+        writeBehind.updateAddress(1L, second);
+
+        writeBehind.flush();
+        ArgumentCaptor<List<Address>> addresses = ArgumentCaptor.forClass(List.class);
+        verify(contactRepository).updateAddresses(anyList(), addresses.capture(), any());
+        Address merged = addresses.getValue().get(0);
+        assertEquals("First Street", merged.getAddress1());
+        assertTrue(merged.isPresent(Address.POSTAL_CODE));
+        assertNull(merged.getPostalCode());
+        assertFalse(merged.isPresent(Address.ADDRESS2));
+    }
+
+    @Test
+    public void testReadAfterCommitIsNotOverlaidAgain() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        ReflectionTestUtils.setField(writeBehind, "transactionManager", transactionManager);
+        Contact stored = contact("Stored", null);
+        stored.setVersion(3L);
+        Contact written = contact("Jessica", null);
+        written.setVersion(5L);
+        List<Contact> views = new ArrayList<>();
+        // read between the commit and the flush completing
+        doAnswer(invocation -> {
+            views.add(writeBehind.overlay(stored));
+            views.add(writeBehind.overlay(written));
+            return null;
+        }).when(transactionManager).commit(any());
+        writeBehind.update(contact("Jessica", null));
+        writeBehind.update(contact("Jessica", null));
+
+        writeBehind.flush();
+        assertEquals(Long.valueOf(5L), views.get(0).getVersion());
+        assertEquals("Jessica", views.get(0).getName());
+        assertSame(written, views.get(1));
+    }
+
+    @Test
+    public void testMissingContactIsNotBuffered() {
+        when(contactRepository.existsById(2L)).thenReturn(false);
+        Contact contact = contact("Nobody", null);
+        contact.setId(2L);
+        assertFalse(writeBehind.update(contact));
+        assertEquals(0, writeBehind.pendingChanges(2L, null));
+    }
+
+    @Test
+    public void testFlushedDurabilityReportsDeletedContact() {
+        ReflectionTestUtils.setField(writeBehind, "durability", ContactWriteBehind.Durability.FLUSHED);
+        when(contactRepository.updateAll(anyList(), any())).thenReturn(Collections.emptyMap());
+        // waits for a flush, asked for by another thread
+        new Thread(() -> {
+            while (writeBehind.pendingChanges(1L, null) == 0) {
+                Thread.yield();
+            }
+            writeBehind.flush();
+        }).start();
+        assertFalse(writeBehind.update(contact("Jessica", null)));
+        assertEquals(1.0, meterRegistry.get(ContactWriteBehind.METRIC_PREFIX + ".lost")
+                .counter().count(), 0);
+    }
+
+    private static Contact contact(String name, String address1) {
+        Contact contact = new Contact();
+        contact.setId(1L);
+        contact.setName(name);
+        contact.setAddress1(address1);
+        return contact;
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.specification;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.jdbc.SqlStatements;
+import com.dariawan.contactapp.repository.ContactRepository;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import javax.sql.DataSource;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import static org.junit.Assert.assertTrue;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ContactSpecificationPlanTest {
+
+    private static final int GENERATED_ROWS = 50000;
+    
+    // set once the rows are generated, they are shared by the tests of the class
+    private static DataSource generatedIn;
+    
+    @Autowired 
+    private DataSource dataSource;
+    
+    @Autowired 
+    private ContactRepository contactRepository;
+    
+    @Before
+    public void generateTestData() throws Exception {
+        if (generatedIn != null) {
+            return;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            deleteTestData(conn);
+            String sql = "insert into contact (name, phone, email) "
+                    + "select 'Generated ' || md5(g::text), '090' || lpad(g::text, 8, '0'), "
+                    + "'gen' || g || '@plan.test' from generate_series(1, ?) g";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, GENERATED_ROWS);
+                ps.executeUpdate();
+            }
+            ScriptUtils.executeSqlScript(conn, new FileSystemResource("src/sql/contact_search.sql"));
+            // plans are chosen from statistics, which autovacuum would only gather later
+            try (Statement st = conn.createStatement()) {
+                st.execute("analyze contact");
+            }
+        }
+        generatedIn = dataSource;
+    }
+    
+    @AfterClass
+    public static void cleanTestData() throws Exception {
+        if (generatedIn == null) {
+            return;
+        }
+        try (Connection conn = generatedIn.getConnection()) {
+            deleteTestData(conn);
+        }
+        generatedIn = null;
+    }
+    
+    private static void deleteTestData(Connection conn) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement("delete from contact where email like ?")) {
+            ps.setString(1, "%@plan.test");
+            ps.executeUpdate();
+        }
+    }
+    
+    @Test
+    public void testNameOrPhoneSearchUsesTrigramIndexes() throws Exception {
+        Contact filter = new Contact();
+        filter.setName("abc1");
+        filter.setPhone("4567");
+        String plan = explain(filter);
+        assertTrue(plan, plan.contains("contact_name_trgm_idx"));
+        assertTrue(plan, plan.contains("contact_phone_trgm_idx"));
+        assertTrue(plan, !plan.contains("Seq Scan"));
+    }
+    
+    @Test
+    public void testNameSearchUsesTrigramIndex() throws Exception {
+        Contact filter = new Contact();
+        filter.setName("abc1");
+        String plan = explain(filter);
+        assertTrue(plan, plan.contains("contact_name_trgm_idx"));
+        assertTrue(plan, !plan.contains("Seq Scan"));
+    }
+    
+    // plan of the query Hibernate renders from ContactSpecification, with its parameters
+    private String explain(Contact filter) throws Exception {
+        List<QueryInfo> queries = SqlStatements.capture(dataSource, () -> 
+                contactRepository.findAll(new ContactSpecification(filter), PageRequest.of(0, 10)));
+        QueryInfo query = queries.stream()
+                .filter(q -> q.getQuery().startsWith("select") && q.getQuery().contains(" like "))
+                .findFirst().orElseThrow(() -> new AssertionError("No search query in " + queries));
+        
+        StringBuilder plan = new StringBuilder();
+        try (Connection conn = dataSource.getConnection(); 
+                PreparedStatement ps = conn.prepareStatement("explain " + query.getQuery())) {
+            for (ParameterSetOperation parameter : query.getParametersList().get(0)) {
+                parameter.getMethod().invoke(ps, parameter.getArgs());
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+}
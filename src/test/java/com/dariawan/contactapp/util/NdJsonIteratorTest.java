@@ -0,0 +1,69 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.util;
+
+import com.dariawan.contactapp.domain.Contact;
+import com.dariawan.contactapp.util.NdJsonIterator.MalformedLineException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class NdJsonIteratorTest {
+
+    @Test
+    public void testMalformedLineIsReportedAndSkipped() {
+        String lines = "{\"name\":\"Jessica\"}\n\n{\"name\":\n{\"name\":\"Ngilang\"}\n";
+        NdJsonIterator<Contact> contacts = new NdJsonIterator<>(
+                new BufferedReader(new StringReader(lines)), new ObjectMapper().readerFor(Contact.class));
+        assertEquals("Jessica", contacts.next().getName());
+        try {
+            contacts.next();
+            fail("Malformed line was parsed");
+        } catch (MalformedLineException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("line 3: "));
+        }
+        assertEquals("Ngilang", contacts.next().getName());
+        assertFalse(contacts.hasNext());
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Spring Boot + JPA/Hibernate + PostgreSQL RESTful CRUD API Example (https://www.dariawan.com)
+ * Copyright (C) 2020 Dariawan <hello@dariawan.com>
+ *
+ * Creative Commons Attribution-ShareAlike 4.0 International License
+ *
+ * Under this license, you are free to:
+ * # Share - copy and redistribute the material in any medium or format
+ * # Adapt - remix, transform, and build upon the material for any purpose,
+ *   even commercially.
+ *
+ * The licensor cannot revoke these freedoms
+ * as long as you follow the license terms.
+ *
+ * License terms:
+ * # Attribution - You must give appropriate credit, provide a link to the
+ *   license, and indicate if changes were made. You may do so in any
+ *   reasonable manner, but not in any way that suggests the licensor
+ *   endorses you or your use.
+ * # ShareAlike - If you remix, transform, or build upon the material, you must
+ *   distribute your contributions under the same license as the original.
+ * # No additional restrictions - You may not apply legal terms or
+ *   technological measures that legally restrict others from doing anything the
+ *   license permits.
+ *
+ * Notices:
+ * # You do not have to comply with the license for elements of the material in
+ *   the public domain or where your use is permitted by an applicable exception
+ *   or limitation.
+ * # No warranties are given. The license may not give you all of
+ *   the permissions necessary for your intended use. For example, other rights
+ *   such as publicity, privacy, or moral rights may limit how you use
+ *   the material.
+ *
+ * You may obtain a copy of the License at
+ *   https://creativecommons.org/licenses/by-sa/4.0/
+ *   https://creativecommons.org/licenses/by-sa/4.0/legalcode
+ */
+package com.dariawan.contactapp.util;
+
+import com.dariawan.contactapp.exception.ResourceNotFoundException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>(Duration.ofSeconds(5));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch leading = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> flight.load(1L, () -> {
+            loads.incrementAndGet();
+            leading.countDown();
+            release.await();
+            return "Jessica";
+        })));
+        leading.await();
+        for (int i = 0; i < 7; i++) {
+            results.add(executor.submit(() -> flight.load(1L, () -> {
+                loads.incrementAndGet();
+                return "own load";
+            })));
+        }
+        // let the followers reach the wait
+        Thread.sleep(100);
+        release.countDown();
+        for (Future<String> result : results) {
+            assertEquals("Jessica", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+
+        // nothing is cached once the load completed
+        assertEquals("again", flight.load(1L, () -> "again"));
+    }
+
+    @Test
+    public void testFollowersGetTheirOwnCopies() throws Exception {
+        SingleFlight<Long, List<String>> flight = new SingleFlight<>(Duration.ofSeconds(5), ArrayList::new);
+        List<String> loaded = new ArrayList<>(Arrays.asList("Jessica"));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch leading = new CountDownLatch(1);
+        Future<List<String>> leader = executor.submit(() -> flight.load(3L, () -> {
+            leading.countDown();
+            release.await();
+            return loaded;
+        }));
+        leading.await();
+        List<Future<List<String>>> followers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            followers.add(executor.submit(() -> flight.load(3L, () -> new ArrayList<>())));
+        }
+        Thread.sleep(100);
+        release.countDown();
+        assertSame(loaded, leader.get(5, TimeUnit.SECONDS));
+        // the leader changing its value afterwards does not reach the followers
+        loaded.add("Ngilang");
+        List<String> first = followers.get(0).get(5, TimeUnit.SECONDS);
+        List<String> second = followers.get(1).get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("Jessica"), first);
+        assertEquals(Arrays.asList("Jessica"), second);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testCallersAfterForgetLoadAgain() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>(Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch leading = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> flight.load(4L, () -> {
+            leading.countDown();
+            release.await();
+            return "before the write";
+        }));
+        leading.await();
+        // a write committed meanwhile
+        flight.forget(4L);
+        assertEquals("after the write", flight.load(4L, () -> "after the write"));
+        release.countDown();
+        assertEquals("before the write", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFollowersGetTheLeadersException() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>(Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch leading = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> flight.load(2L, () -> {
+            leading.countDown();
+            release.await();
+            throw new ResourceNotFoundException("Cannot find Contact with id: 2");
+        }));
+        leading.await();
+        Future<String> follower = executor.submit(() -> flight.load(2L, () -> "own load"));
+        Thread.sleep(100);
+        release.countDown();
+        for (Future<String> result : Arrays.asList(leader, follower)) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("Expected ResourceNotFoundException");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof ResourceNotFoundException);
+            }
+        }
+    }
+
+    @Test
+    public void testFollowerLoadsItselfAfterMaxWait() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>(Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch leading = new CountDownLatch(1);
+        executor.submit(() -> flight.load(3L, () -> {
+            leading.countDown();
+            release.await();
+            return "slow";
+        }));
+        leading.await();
+        try {
+            assertEquals("own load", flight.load(3L, () -> "own load"));
+        } finally {
+            release.countDown();
+        }
+    }
+}